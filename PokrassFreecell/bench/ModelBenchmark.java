@@ -0,0 +1,327 @@
+import java.awt.Point;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Benchmarks the hot paths of the rules and the card model on fixed, seeded
+ * positions. Each benchmark is warmed up, then timed in batches; the report
+ * shows the throughput, the time per operation at several percentiles (from
+ * the batch times) and the bytes allocated per operation
+ * 
+ * Usage: java -Djava.awt.headless=true ModelBenchmark [benchmark name filter]
+ * 
+ * The images folder must be on the classpath for the card images. The
+ * numbers from the last run on the reference machine are kept in
+ * bench/baseline.txt, so changes to them show up in review
+ * 
+ * @author Michelle Pokrass
+ * 
+ */
+public class ModelBenchmark
+{
+	// How long to warm up and measure each benchmark, and how many
+	// operations to time together
+	private static final int WARMUP_ITERATIONS = 5;
+
+	private static final int MEASURE_ITERATIONS = 10;
+
+	private static final long ITERATION_NANOS = 500000000L;
+
+	private static final int BATCH = 256;
+
+	// The results of every operation are added here so the JIT cannot
+	// remove the work
+	private static long sink;
+
+	// The time of every measured batch
+	private static long[] samples = new long[1 << 16];
+
+	private static int sampleCount;
+
+	/**
+	 * A benchmarked operation on a fixed position
+	 * 
+	 * @author Michelle Pokrass
+	 * 
+	 */
+	private abstract static class Benchmark
+	{
+		private final String name;
+
+		/**
+		 * Creates a new benchmark
+		 * 
+		 * @param name
+		 *            the String name of the benchmark
+		 */
+		Benchmark(String name)
+		{
+			this.name = name;
+		}
+
+		/**
+		 * Runs the operation once
+		 * 
+		 * @return an integer result of the operation
+		 */
+		abstract int run();
+	}
+
+	/**
+	 * Runs the benchmarks
+	 * 
+	 * @param args
+	 *            optionally a part of the names of the benchmarks to run
+	 */
+	public static void main(String[] args)
+	{
+		String filter = args.length > 0 ? args[0] : "";
+		System.out.println(String.format("%-28s %14s %10s %10s %10s %12s",
+				"Benchmark", "ops/s", "p50 ns", "p90 ns", "p99 ns",
+				"bytes/op"));
+		for (Benchmark benchmark : createBenchmarks())
+		{
+			if (benchmark.name.contains(filter))
+				measure(benchmark);
+		}
+	}
+
+	/**
+	 * Creates every benchmark and its fixed position
+	 * 
+	 * @return the list of benchmarks
+	 */
+	private static ArrayList<Benchmark> createBenchmarks()
+	{
+		ArrayList<Benchmark> benchmarks = new ArrayList<Benchmark>();
+
+		// A cascade with 5 cards under a run of 8 that can be picked up:
+		// 3C 8H QS TD 2S then KH QC JD TS 9H 8C 7D 6S
+		final Cascade cascade = new Cascade(120, 150);
+		for (String card : "3C 8H QS TD 2S KH QC JD TS 9H 8C 7D 6S".split(" "))
+			cascade.add(faceUp(card));
+		final Point runPoint = new Point(cascade.getCard(5).x + 5,
+				cascade.getCard(5).y + 5);
+		final CardView fits = faceUp("5D");
+
+		benchmarks.add(new Benchmark("Cascade.canPickUp") {
+			int run()
+			{
+				return cascade.canPickUp(runPoint) ? 1 : 0;
+			}
+		});
+		benchmarks.add(new Benchmark("Cascade.pickUp") {
+			int run()
+			{
+				// Put the run back so every operation starts the same
+				Movable item = cascade.pickUp(runPoint);
+				cascade.place(item);
+				return cascade.getNoOfCards();
+			}
+		});
+		benchmarks.add(new Benchmark("Cascade.canPlace") {
+			int run()
+			{
+				return cascade.canPlace(fits) ? 1 : 0;
+			}
+		});
+		benchmarks.add(new Benchmark("Hand.toString") {
+			int run()
+			{
+				return cascade.toString().length();
+			}
+		});
+
+		// Tables half way through the solutions of deals 1 - 8
+		final TablePanel[] tables = new TablePanel[8];
+		Solver solver = new Solver();
+		for (int deal = 1; deal <= tables.length; deal++)
+		{
+			GameState state = new GameState();
+			Deals.deal(deal, state);
+			int[] moves = solver.solve(state).getMoves();
+			for (int index = 0; index < moves.length / 2; index++)
+				state.apply(moves[index]);
+			tables[deal - 1] = new TablePanel(null);
+			tables[deal - 1].loadGameState(state);
+		}
+		// A one card cascade still counts the free spaces, and always fits so
+		// no message box is shown
+		final Cascade oneCard = new Cascade(0, 0);
+		oneCard.add(faceUp("9H"));
+		final Cascade destination = new Cascade(0, 0);
+
+		benchmarks.add(new Benchmark("TablePanel.canAutoComplete") {
+			int next;
+
+			int run()
+			{
+				next = (next + 1) & 7;
+				return tables[next].canAutoComplete() ? 1 : 0;
+			}
+		});
+		benchmarks.add(new Benchmark("TablePanel.enoughFreecells") {
+			int next;
+
+			int run()
+			{
+				next = (next + 1) & 7;
+				return tables[next].enoughFreecells(oneCard, destination) ? 1
+						: 0;
+			}
+		});
+
+		final Deck deck = new Deck();
+		benchmarks.add(new Benchmark("Deck.shuffle") {
+			int run()
+			{
+				deck.shuffle();
+				return deck.cardsLeft();
+			}
+		});
+
+		// Random games on the engine, starting from deals 1 - 8
+		final GameState[] deals = new GameState[8];
+		for (int deal = 1; deal <= deals.length; deal++)
+		{
+			deals[deal - 1] = new GameState();
+			Deals.deal(deal, deals[deal - 1]);
+		}
+		final GameState playout = new GameState();
+		final int[] moves = new int[GameState.MAX_MOVES];
+		final Random random = new Random(1);
+		benchmarks.add(new Benchmark("GameState.randomPlayout") {
+			int next;
+
+			int run()
+			{
+				next = (next + 1) & 7;
+				playout.copyFrom(deals[next]);
+				// Play random moves until the game is stuck or long enough
+				int played = 0;
+				while (played < 200)
+				{
+					int count = playout.generateMoves(moves);
+					if (count == 0)
+						break;
+					playout.apply(moves[random.nextInt(count)]);
+					played++;
+				}
+				return played;
+			}
+		});
+		return benchmarks;
+	}
+
+	/**
+	 * Warms up and measures a benchmark, printing one line of results
+	 * 
+	 * @param benchmark
+	 *            the Benchmark to run
+	 */
+	private static void measure(Benchmark benchmark)
+	{
+		for (int iteration = 0; iteration < WARMUP_ITERATIONS; iteration++)
+			runFor(benchmark, ITERATION_NANOS, false);
+
+		sampleCount = 0;
+		long startBytes = allocatedBytes();
+		long startTime = System.nanoTime();
+		long operations = 0;
+		for (int iteration = 0; iteration < MEASURE_ITERATIONS; iteration++)
+			operations += runFor(benchmark, ITERATION_NANOS, true);
+		long elapsed = System.nanoTime() - startTime;
+		long bytes = allocatedBytes() - startBytes;
+
+		// Each sample is the time of one batch, so divide by the batch size
+		// to get the time per operation
+		int count = Math.min(sampleCount, samples.length);
+		Arrays.sort(samples, 0, count);
+		System.out.println(String.format(
+				"%-28s %14.0f %10.1f %10.1f %10.1f %12s", benchmark.name,
+				operations * 1e9 / elapsed, percentile(samples, count, 50),
+				percentile(samples, count, 90),
+				percentile(samples, count, 99), startBytes < 0 ? "n/a" : String
+						.format("%.1f", (double) bytes / operations)));
+	}
+
+	/**
+	 * Runs a benchmark in batches for a length of time
+	 * 
+	 * @param benchmark
+	 *            the Benchmark to run
+	 * @param nanos
+	 *            the long amount of nanoseconds to run for
+	 * @param record
+	 *            true to record the batch times, false when warming up
+	 * @return the long amount of operations run
+	 */
+	private static long runFor(Benchmark benchmark, long nanos, boolean record)
+	{
+		long end = System.nanoTime() + nanos;
+		long operations = 0;
+		long result = 0;
+		while (System.nanoTime() < end)
+		{
+			long batchStart = System.nanoTime();
+			for (int index = 0; index < BATCH; index++)
+				result += benchmark.run();
+			long batchTime = System.nanoTime() - batchStart;
+			operations += BATCH;
+			if (record && sampleCount < samples.length)
+				samples[sampleCount++] = batchTime;
+		}
+		sink += result;
+		return operations;
+	}
+
+	/**
+	 * Returns a percentile of the sorted batch times, per operation
+	 * 
+	 * @param samples
+	 *            the sorted long array of batch times
+	 * @param count
+	 *            the integer amount of samples
+	 * @param percent
+	 *            the integer percentile
+	 * @return the double nanoseconds per operation at the percentile
+	 */
+	private static double percentile(long[] samples, int count, int percent)
+	{
+		if (count == 0)
+			return 0;
+		int index = Math.min(count - 1, count * percent / 100);
+		return (double) samples[index] / BATCH;
+	}
+
+	/**
+	 * Returns the bytes allocated by this thread so far, if the JVM can tell
+	 * 
+	 * @return the long amount of bytes, or -1 if it is not supported
+	 */
+	private static long allocatedBytes()
+	{
+		ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+		if (threads instanceof com.sun.management.ThreadMXBean)
+			return ((com.sun.management.ThreadMXBean) threads)
+					.getThreadAllocatedBytes(Thread.currentThread().getId());
+		return -1;
+	}
+
+	/**
+	 * Creates a face up view of a card
+	 * 
+	 * @param card
+	 *            the String form of the card, for example "5D"
+	 * @return the new CardView
+	 */
+	private static CardView faceUp(String card)
+	{
+		CardView view = new CardView(Card.valueOf(card));
+		view.flip();
+		return view;
+	}
+}
@@ -0,0 +1,222 @@
+import java.awt.Graphics;
+import java.awt.GraphicsEnvironment;
+import java.awt.image.BufferedImage;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.swing.JFrame;
+import javax.swing.SwingUtilities;
+
+/**
+ * Benchmarks how long the program takes to start. Every run is a new JVM, so
+ * class loading and image decoding are measured as the player sees them. Two
+ * times are reported, from the start of the JVM: the first frame, when the
+ * empty table has been painted, and interactive, when every card image is
+ * ready and a dealt game has been painted face up
+ * 
+ * Usage: java [-Djava.awt.headless=true] StartupBenchmark [runs]
+ * 
+ * The images folder must be on the classpath for the card images. When
+ * headless, the table is painted into an image instead of a window. The
+ * numbers from the last run on the reference machine are kept in
+ * bench/baseline.txt, so changes to them show up in review
+ * 
+ * @author Michelle Pokrass
+ * 
+ */
+public class StartupBenchmark
+{
+	// How many JVMs to start when no amount is given
+	private static final int RUNS = 9;
+
+	// The argument that makes a JVM time its own start instead
+	private static final String CHILD = "child";
+
+	private static TablePanel table;
+
+	private static BufferedImage screen;
+
+	/**
+	 * Starts the JVMs and reports the median times, or times this JVM if it
+	 * is one of them
+	 * 
+	 * @param args
+	 *            optionally the amount of JVMs to start
+	 * @throws Exception
+	 *             if a JVM could not be started or did not report its times
+	 */
+	public static void main(String[] args) throws Exception
+	{
+		if (args.length > 0 && args[0].equals(CHILD))
+		{
+			runChild();
+			return;
+		}
+		int runs = args.length > 0 ? Integer.parseInt(args[0]) : RUNS;
+		long[] firstFrame = new long[runs];
+		long[] interactive = new long[runs];
+		for (int run = 0; run < runs; run++)
+		{
+			long[] times = startChild();
+			firstFrame[run] = times[0];
+			interactive[run] = times[1];
+		}
+		System.out.println(String.format("%-28s %10s %10s %10s",
+				"Startup", "min ms", "p50 ms", "max ms"));
+		report("firstFrame", firstFrame);
+		report("interactive", interactive);
+	}
+
+	/**
+	 * Starts a JVM with the same classpath and options, and reads its times
+	 * 
+	 * @return the long milliseconds to the first frame and to interactive
+	 * @throws IOException
+	 *             if the JVM could not be started or did not report
+	 * @throws InterruptedException
+	 *             if the thread was interrupted while waiting for the JVM
+	 */
+	private static long[] startChild() throws IOException,
+			InterruptedException
+	{
+		List<String> command = new ArrayList<String>();
+		command.add(System.getProperty("java.home") + File.separator + "bin"
+				+ File.separator + "java");
+		command.add("-cp");
+		command.add(System.getProperty("java.class.path"));
+		if (GraphicsEnvironment.isHeadless())
+			command.add("-Djava.awt.headless=true");
+		command.add(StartupBenchmark.class.getName());
+		command.add(CHILD);
+		Process process = new ProcessBuilder(command).redirectErrorStream(
+				true).start();
+		BufferedReader output = new BufferedReader(new InputStreamReader(
+				process.getInputStream(), "UTF-8"));
+		String last = null;
+		String line;
+		while ((line = output.readLine()) != null)
+			last = line;
+		if (process.waitFor() != 0 || last == null)
+			throw new IOException("The timed JVM failed: " + last);
+		String[] fields = last.trim().split(" ");
+		return new long[] { Long.parseLong(fields[0]),
+				Long.parseLong(fields[1]) };
+	}
+
+	/**
+	 * Times the start of this JVM and prints the two times on one line
+	 * 
+	 * @throws Exception
+	 *             if the table could not be created or painted
+	 */
+	private static void runChild() throws Exception
+	{
+		onEventThread(new Runnable() {
+			/**
+			 * Creates the table, in a window if there is a screen, and
+			 * paints it
+			 */
+			public void run()
+			{
+				if (GraphicsEnvironment.isHeadless())
+				{
+					table = new TablePanel(null);
+					table.setSize(table.getPreferredSize());
+				}
+				else
+				{
+					JFrame frame = new JFrame("Freecell");
+					table = new TablePanel(frame);
+					frame.add(table);
+					frame.pack();
+					frame.setVisible(true);
+				}
+				paint();
+			}
+		});
+		long firstFrame = uptime();
+		CardImages.awaitLoaded();
+		onEventThread(new Runnable() {
+			/**
+			 * Deals a game and paints it with the card faces
+			 */
+			public void run()
+			{
+				table.newGame(1);
+				paint();
+			}
+		});
+		long interactive = uptime();
+		System.out.println(firstFrame + " " + interactive);
+		System.exit(0);
+	}
+
+	/**
+	 * Paints the whole table, on the screen if it is showing and into an
+	 * image otherwise
+	 */
+	private static void paint()
+	{
+		if (table.isShowing())
+		{
+			table.paintImmediately(0, 0, table.getWidth(), table.getHeight());
+			return;
+		}
+		if (screen == null)
+			screen = new BufferedImage(table.getWidth(), table.getHeight(),
+					BufferedImage.TYPE_INT_RGB);
+		Graphics g = screen.getGraphics();
+		table.paint(g);
+		g.dispose();
+	}
+
+	/**
+	 * Runs something on the Event Dispatch Thread and waits for it
+	 * 
+	 * @param action
+	 *            the Runnable to run
+	 * @throws InterruptedException
+	 *             if the thread was interrupted while waiting
+	 * @throws InvocationTargetException
+	 *             if the Runnable threw an exception
+	 */
+	private static void onEventThread(Runnable action)
+			throws InterruptedException, InvocationTargetException
+	{
+		SwingUtilities.invokeAndWait(action);
+	}
+
+	/**
+	 * Returns how long this JVM has been running
+	 * 
+	 * @return the long amount of milliseconds
+	 */
+	private static long uptime()
+	{
+		return ManagementFactory.getRuntimeMXBean().getUptime();
+	}
+
+	/**
+	 * Prints the smallest, median and largest of some times
+	 * 
+	 * @param name
+	 *            the String name of the times
+	 * @param times
+	 *            the long times, in milliseconds
+	 */
+	private static void report(String name, long[] times)
+	{
+		long[] sorted = times.clone();
+		Arrays.sort(sorted);
+		System.out.println(String.format("%-28s %10d %10d %10d", name,
+				sorted[0], sorted[sorted.length / 2],
+				sorted[sorted.length - 1]));
+	}
+}
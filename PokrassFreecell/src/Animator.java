@@ -0,0 +1,412 @@
+import java.awt.Graphics;
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import javax.swing.JComponent;
+import javax.swing.Timer;
+
+/**
+ * Moves cards across the table over time, without ever blocking the Event
+ * Dispatch Thread. One Swing timer ticks about 60 times a second while
+ * anything is moving, and every tick puts each moving card where it should be
+ * for the time that has passed since its move started, so any amount of
+ * cards can move at once and a slow frame does not slow the cards down
+ * 
+ * A card is already in its new hand when its move is added, and the animator
+ * only changes where it is drawn. Until its move starts, a card is drawn
+ * where the move starts from, and it is turned face up when it arrives.
+ * A second move of a card that is still moving starts where and when the
+ * first one ends. All moves can be finished at once, for example when the
+ * player clicks during an animation
+ * 
+ * The methods of an animator are called on the Event Dispatch Thread
+ * 
+ * @author Michelle Pokrass
+ * 
+ */
+public class Animator
+{
+	// The time between frames, in milliseconds
+	private static final int FRAME_TIME = 15;
+
+	private final JComponent table;
+
+	private final Timer timer;
+
+	// The moves that have not ended, in the order they were added, and the
+	// card of each one
+	private final List<Tween> tweens = new ArrayList<Tween>();
+
+	private final List<CardView> movingCards = new ArrayList<CardView>();
+
+	private final List<CardView> movingView = Collections
+			.unmodifiableList(movingCards);
+
+	// Run once nothing is moving
+	private final List<Runnable> whenFinished = new ArrayList<Runnable>();
+
+	// Where the table under the moving cards has changed since it was last
+	// asked for, or null if it has not
+	private Rectangle changed;
+
+	/**
+	 * The move of one card between two points
+	 * 
+	 * @author Michelle Pokrass
+	 * 
+	 */
+	private static class Tween
+	{
+		private final CardView card;
+
+		private final Point from;
+
+		private final Point to;
+
+		// When the move starts and ends, in nanoseconds
+		private final long start;
+
+		private final long end;
+
+		// If the card has left the start of the move
+		private boolean started;
+
+		// Only created while a recorder is running
+		private final TableEvents.MoveCard event;
+
+		/**
+		 * Creates a new move
+		 * 
+		 * @param card
+		 *            the CardView to move
+		 * @param from
+		 *            the Point the card starts at
+		 * @param to
+		 *            the Point the card ends at
+		 * @param start
+		 *            the long time the move starts, in nanoseconds
+		 * @param duration
+		 *            the long amount of nanoseconds the move takes
+		 */
+		Tween(CardView card, Point from, Point to, long start, long duration)
+		{
+			this.card = card;
+			this.from = new Point(from);
+			this.to = new Point(to);
+			this.start = start;
+			end = start + Math.max(1, duration);
+			event = TableEvents.isRecording() ? new TableEvents.MoveCard()
+					: null;
+			if (event != null)
+				event.begin();
+		}
+
+		/**
+		 * Puts the card where it is at a time
+		 * 
+		 * @param now
+		 *            the long time in nanoseconds
+		 * @return true if the move has ended, false otherwise
+		 */
+		boolean step(long now)
+		{
+			started = true;
+			if (now >= end)
+			{
+				arrive();
+				return true;
+			}
+			double done = (double) Math.max(0, now - start) / (end - start);
+			card.setLocation(from.x + (int) ((to.x - from.x) * done), from.y
+					+ (int) ((to.y - from.y) * done));
+			return false;
+		}
+
+		/**
+		 * Puts the card at the end of the move, face up
+		 */
+		void arrive()
+		{
+			card.setLocation(to);
+			if (!card.isFaceUp())
+				card.flip();
+			if (event == null)
+				return;
+			event.end();
+			if (event.shouldCommit())
+			{
+				event.card = card.toString();
+				event.commit();
+			}
+		}
+	}
+
+	/**
+	 * Creates a new animator
+	 * 
+	 * @param table
+	 *            the JComponent the cards are drawn on
+	 */
+	public Animator(JComponent table)
+	{
+		this.table = table;
+		timer = new Timer(FRAME_TIME, new ActionListener() {
+			/**
+			 * Moves the cards on to the next frame
+			 * 
+			 * @param event
+			 *            the event of the timer
+			 */
+			public void actionPerformed(ActionEvent event)
+			{
+				step(System.nanoTime());
+			}
+		});
+		timer.setCoalesce(true);
+	}
+
+	/**
+	 * Starts moving a card
+	 * 
+	 * @param card
+	 *            the CardView to move
+	 * @param from
+	 *            the Point the card starts at (ignored if the card is already
+	 *            moving, since it then starts where its last move ends)
+	 * @param to
+	 *            the Point the card ends at
+	 * @param delay
+	 *            the long amount of milliseconds before the move starts
+	 * @param duration
+	 *            the long amount of milliseconds the move takes
+	 */
+	public void animate(CardView card, Point from, Point to, long delay,
+			long duration)
+	{
+		long start = System.nanoTime() + delay * 1000000;
+		// Follow on from the last move of the same card
+		Tween last = null;
+		for (Tween tween : tweens)
+		{
+			if (tween.card == card)
+				last = tween;
+		}
+		if (last != null)
+		{
+			from = last.to;
+			start = Math.max(start, last.end);
+		}
+		else
+		{
+			// The card stays in its hand, and is drawn at the start of the
+			// move from now on instead of where its hand has put it
+			Rectangle moved = card.getBounds().union(
+					new Rectangle(from, card.getSize()));
+			table.repaint(moved);
+			// The whole table may have changed since the last animation, and
+			// after that only where the card was and where it is going
+			if (tweens.isEmpty())
+				changed = new Rectangle(0, 0, table.getWidth(), table
+						.getHeight());
+			else
+				addChanged(moved);
+		}
+		tweens.add(new Tween(card, from, to, start, duration * 1000000));
+		movingCards.add(card);
+		if (!timer.isRunning())
+			timer.start();
+	}
+
+	/**
+	 * Returns how long it is until every move has ended
+	 * 
+	 * @return the long amount of milliseconds, 0 if nothing is moving
+	 */
+	public long getTimeLeft()
+	{
+		long now = System.nanoTime();
+		long last = now;
+		for (Tween tween : tweens)
+			last = Math.max(last, tween.end);
+		return (last - now + 999999) / 1000000;
+	}
+
+	/**
+	 * Checks if any card is moving or waiting to move
+	 * 
+	 * @return true if a move has not ended, false otherwise
+	 */
+	public boolean isRunning()
+	{
+		return !tweens.isEmpty();
+	}
+
+	/**
+	 * Returns the cards that are moving or waiting to move, which the hands
+	 * should not draw
+	 * 
+	 * @return the List of Cards (it changes as the moves end)
+	 */
+	public List<CardView> getMovingCards()
+	{
+		return movingView;
+	}
+
+	/**
+	 * Runs something once nothing is moving, straight away if nothing is
+	 * 
+	 * @param action
+	 *            the Runnable to run
+	 */
+	public void whenFinished(Runnable action)
+	{
+		whenFinished.add(action);
+		if (tweens.isEmpty())
+			runFinished();
+	}
+
+	/**
+	 * Ends every move at once, putting the cards where they are going
+	 */
+	public void finish()
+	{
+		if (tweens.isEmpty())
+			return;
+		step(Long.MAX_VALUE);
+	}
+
+	/**
+	 * Ends every move at once and forgets what was to be run afterwards
+	 */
+	public void cancel()
+	{
+		whenFinished.clear();
+		finish();
+	}
+
+	/**
+	 * Returns where the table under the moving cards has changed since this
+	 * was last called, because a card has started or stopped moving. The
+	 * whole table has changed when an animation starts
+	 * 
+	 * @return the Rectangle that has changed, or null if nothing has
+	 */
+	public Rectangle takeChanged()
+	{
+		Rectangle area = changed;
+		changed = null;
+		return area;
+	}
+
+	/**
+	 * Draws the moving cards on top of the table, the earliest on top. A
+	 * card waiting for its move is drawn at the start of the move
+	 * 
+	 * @param g
+	 *            the Graphics to draw with
+	 */
+	public void draw(Graphics g)
+	{
+		for (int index = tweens.size() - 1; index >= 0; index--)
+		{
+			Tween tween = tweens.get(index);
+			CardView card = tween.card;
+			if (tween.started)
+				card.draw(g);
+			// A card waiting for a second move is drawn by its first one
+			else if (isFirstMove(index))
+			{
+				int dx = tween.from.x - card.x;
+				int dy = tween.from.y - card.y;
+				g.translate(dx, dy);
+				card.draw(g);
+				g.translate(-dx, -dy);
+			}
+		}
+	}
+
+	/**
+	 * Checks if a move is the first of its card that has not ended
+	 * 
+	 * @param index
+	 *            the integer index of the move
+	 * @return true if no earlier move of the same card is waiting or
+	 *         running, false otherwise
+	 */
+	private boolean isFirstMove(int index)
+	{
+		CardView card = tweens.get(index).card;
+		for (int earlier = 0; earlier < index; earlier++)
+		{
+			if (tweens.get(earlier).card == card)
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Moves every card to where it is at a time, and repaints where they
+	 * moved
+	 * 
+	 * @param now
+	 *            the long time in nanoseconds
+	 */
+	private void step(long now)
+	{
+		Rectangle dirty = null;
+		for (int index = 0; index < tweens.size(); index++)
+		{
+			Tween tween = tweens.get(index);
+			if (now < tween.start)
+				continue;
+			// A card that has not started was drawn at the start of its move
+			Rectangle oldBounds = tween.started ? tween.card.getBounds()
+					: new Rectangle(tween.from, tween.card.getSize());
+			boolean ended = tween.step(now);
+			Rectangle moved = oldBounds.union(tween.card.getBounds());
+			dirty = dirty == null ? moved : dirty.union(moved);
+			if (ended)
+			{
+				// The card is part of the table again
+				addChanged(tween.card.getBounds());
+				tweens.remove(index);
+				movingCards.remove(index);
+				index--;
+			}
+		}
+		if (dirty != null)
+			table.repaint(dirty);
+		if (tweens.isEmpty())
+		{
+			timer.stop();
+			runFinished();
+		}
+	}
+
+	/**
+	 * Adds to where the table under the moving cards has changed
+	 * 
+	 * @param area
+	 *            the Rectangle that has changed
+	 */
+	private void addChanged(Rectangle area)
+	{
+		changed = changed == null ? new Rectangle(area) : changed.union(area);
+	}
+
+	/**
+	 * Runs what was waiting for the moves to end
+	 */
+	private void runFinished()
+	{
+		List<Runnable> actions = new ArrayList<Runnable>(whenFinished);
+		whenFinished.clear();
+		for (Runnable action : actions)
+			action.run();
+	}
+}
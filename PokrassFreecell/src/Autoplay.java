@@ -0,0 +1,124 @@
+import java.util.List;
+
+/**
+ * Finds the cards on the table that are safe to move to the foundations. A
+ * card is safe when it is next on its foundation and both cards of the
+ * opposite colour one rank lower are already home, so it is never needed to
+ * hold them. The height of each suit's foundation is kept as one number, so
+ * each card is checked with a few comparisons however full the foundations
+ * are. Moving a card home can make the card under it safe too, so the cards
+ * are followed down each cascade without moving them, and every move of an
+ * autoplay is found at once
+ * 
+ * @author Michelle Pokrass
+ * 
+ */
+public class Autoplay
+{
+	// The rank of the top card of each suit's foundation (indexed by suit - 1)
+	private final int[] heights = new int[GameState.FOUNDATIONS];
+
+	// The slot of the foundation holding each suit, or -1 if it has not
+	// been started
+	private final int[] foundationSlots = new int[GameState.FOUNDATIONS];
+
+	// The slots of the empty foundations, for the aces
+	private final int[] emptySlots = new int[GameState.FOUNDATIONS];
+
+	// The amount of cards left in each cascade and freecell as the moves are
+	// found
+	private final int[] remaining = new int[GameState.FIRST_FOUNDATION];
+
+	/**
+	 * Finds every card that is safe to move to a foundation, including the
+	 * cards that only become safe once other safe cards have gone home. Each
+	 * pass checks the top card of every cascade and freecell as if the moves
+	 * found so far had been made, until a pass finds nothing
+	 * 
+	 * @param slots
+	 *            the List of hands on the table, in the order of the GameState
+	 *            slots (cascades, freecells, then foundations)
+	 * @param moves
+	 *            the int array the moves are written to, encoded like
+	 *            GameState moves, in an order they can be made in, with room
+	 *            for 52 moves
+	 * @return the integer amount of moves found
+	 */
+	public int findSafeMoves(List<Hand> slots, int[] moves)
+	{
+		// Read the height of every suit from the foundations
+		int emptyCount = 0;
+		for (int suit = 0; suit < heights.length; suit++)
+		{
+			heights[suit] = 0;
+			foundationSlots[suit] = -1;
+		}
+		for (int slot = GameState.FIRST_FOUNDATION; slot < GameState.SLOTS;
+				slot++)
+		{
+			Hand foundation = slots.get(slot);
+			if (foundation.getNoOfCards() == 0)
+				emptySlots[emptyCount++] = slot;
+			else
+			{
+				int suit = foundation.getTopCard().getCard().getSuit();
+				heights[suit - 1] = foundation.getNoOfCards();
+				foundationSlots[suit - 1] = slot;
+			}
+		}
+
+		for (int source = 0; source < GameState.FIRST_FOUNDATION; source++)
+			remaining[source] = slots.get(source).getNoOfCards();
+
+		// Check the top card of every cascade and freecell, taking off the
+		// safe ones, until none of the cards left on top are safe
+		int count = 0;
+		int nextEmpty = 0;
+		boolean found = true;
+		while (found)
+		{
+			found = false;
+			for (int source = 0; source < GameState.FIRST_FOUNDATION; source++)
+			{
+				// Take every safe card off this slot in turn
+				while (remaining[source] > 0)
+				{
+					Card card = slots.get(source).getCard(
+							remaining[source] - 1).getCard();
+					int suit = card.getSuit();
+					if (!isSafe(card.getRank(), suit))
+						break;
+					// Aces start the next empty foundation
+					if (foundationSlots[suit - 1] < 0)
+						foundationSlots[suit - 1] = emptySlots[nextEmpty++];
+					moves[count++] = GameState.move(source,
+							foundationSlots[suit - 1], 1);
+					heights[suit - 1]++;
+					remaining[source]--;
+					found = true;
+				}
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Checks if a card is next on its foundation and safe to move there
+	 * 
+	 * @param rank
+	 *            the integer rank of the card
+	 * @param suit
+	 *            the integer suit of the card (1 - 4)
+	 * @return true if the card can go home and is not needed on the table,
+	 *         false otherwise
+	 */
+	private boolean isSafe(int rank, int suit)
+	{
+		if (heights[suit - 1] + 1 != rank)
+			return false;
+		// The suits of the other colour are the other two with a different
+		// remainder, e.g. clubs (2) and spades (4) for diamonds (1)
+		int other = suit % 2 == 1 ? 1 : 0;
+		return heights[other] >= rank - 1 && heights[other + 2] >= rank - 1;
+	}
+}
@@ -0,0 +1,219 @@
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Solves a range of numbered deals in parallel and writes one line per deal
+ * to a file as soon as it is solved. The range is split in half until each
+ * task is a single deal, and the tasks run on a work stealing fork/join pool
+ * so a slow deal never holds up the others. Every worker thread has its own
+ * solver, and every deal has its own time limit
+ * 
+ * Usage: java BatchSolver first last outputFile [timeLimitMillis] [threads]
+ * 
+ * @author Michelle Pokrass
+ * 
+ */
+public class BatchSolver
+{
+	private final long timeLimit;
+
+	private final Writer output;
+
+	private IOException writeError;
+
+	// Each worker thread reuses one solver and planner for all of its deals
+	private final ThreadLocal<Solver> solvers = new ThreadLocal<Solver>() {
+		protected Solver initialValue()
+		{
+			Solver solver = new Solver();
+			solver.setTimeLimit(timeLimit);
+			return solver;
+		}
+	};
+
+	private final ThreadLocal<SupermovePlanner> planners = new ThreadLocal<SupermovePlanner>() {
+		protected SupermovePlanner initialValue()
+		{
+			return new SupermovePlanner();
+		}
+	};
+
+	/**
+	 * Creates a new batch solver
+	 * 
+	 * @param timeLimit
+	 *            the long amount of milliseconds each deal may take
+	 * @param output
+	 *            the Writer the result lines are written to
+	 */
+	public BatchSolver(long timeLimit, Writer output)
+	{
+		this.timeLimit = timeLimit;
+		this.output = output;
+	}
+
+	/**
+	 * Solves every deal in a range, writing a line for each deal
+	 * 
+	 * @param first
+	 *            the long number of the first deal
+	 * @param last
+	 *            the long number of the last deal (included)
+	 * @param threads
+	 *            the integer amount of worker threads
+	 * @throws IOException
+	 *             if the results could not be written
+	 */
+	public void solve(long first, long last, int threads) throws IOException
+	{
+		output.write("deal\tresult\tlength\tnodes\tmillis\tsteps\n");
+		ForkJoinPool pool = new ForkJoinPool(threads);
+		try
+		{
+			pool.invoke(new DealRange(first, last));
+		}
+		finally
+		{
+			pool.shutdown();
+		}
+		output.flush();
+		if (writeError != null)
+			throw writeError;
+	}
+
+	/**
+	 * Solves one deal and writes its line
+	 * 
+	 * @param dealNumber
+	 *            the long number of the deal
+	 */
+	private void solveDeal(long dealNumber)
+	{
+		GameState state = new GameState();
+		Deals.deal(dealNumber, state);
+		SolveResult result = solvers.get().solve(state);
+		// Count the single card moves, as the solution would be played by
+		// hand
+		int steps = planners.get().expandAll(state, result.getMoves()).length;
+
+		String outcome;
+		if (result.getStatus() == SolveResult.Status.SOLVED)
+			outcome = "solvable";
+		else if (result.getStatus() == SolveResult.Status.UNSOLVABLE)
+			outcome = "unsolvable";
+		else if (result.getStatus() == SolveResult.Status.DEPTH_LIMIT)
+			outcome = "depth-limit";
+		else
+			outcome = "timeout";
+		write(String.format("%d\t%s\t%d\t%d\t%d\t%d\n", dealNumber,
+				outcome, result.getMoves().length, result.getNodes(),
+				result.getElapsedNanos() / 1000000, steps));
+	}
+
+	/**
+	 * Writes a line to the output, keeping the first error
+	 * 
+	 * @param line
+	 *            the String line to write
+	 */
+	private synchronized void write(String line)
+	{
+		if (writeError != null)
+			return;
+		try
+		{
+			output.write(line);
+			output.flush();
+		}
+		catch (IOException e)
+		{
+			writeError = e;
+		}
+	}
+
+	/**
+	 * A task that solves a range of deals, splitting it in half until only
+	 * one deal is left
+	 * 
+	 * @author Michelle Pokrass
+	 * 
+	 */
+	@SuppressWarnings("serial")
+	private class DealRange extends RecursiveAction
+	{
+		private final long first;
+
+		private final long last;
+
+		/**
+		 * Creates a new task for a range of deals
+		 * 
+		 * @param first
+		 *            the long number of the first deal
+		 * @param last
+		 *            the long number of the last deal (included)
+		 */
+		DealRange(long first, long last)
+		{
+			this.first = first;
+			this.last = last;
+		}
+
+		/**
+		 * Solves the deal, or splits the range into two tasks
+		 */
+		protected void compute()
+		{
+			if (first == last)
+			{
+				solveDeal(first);
+				return;
+			}
+			long middle = first + (last - first) / 2;
+			invokeAll(new DealRange(first, middle), new DealRange(middle + 1,
+					last));
+		}
+	}
+
+	/**
+	 * Solves the deals given on the command line
+	 * 
+	 * @param args
+	 *            the first deal, last deal, output file, and optionally the
+	 *            time limit per deal in milliseconds and the amount of threads
+	 */
+	public static void main(String[] args) throws IOException
+	{
+		if (args.length < 3)
+		{
+			System.err.println("Usage: java BatchSolver first last outputFile "
+					+ "[timeLimitMillis] [threads]");
+			System.exit(1);
+		}
+		long first = Long.parseLong(args[0]);
+		long last = Long.parseLong(args[1]);
+		long timeLimit = 10000;
+		if (args.length > 3)
+			timeLimit = Long.parseLong(args[3]);
+		int threads = Runtime.getRuntime().availableProcessors();
+		if (args.length > 4)
+			threads = Integer.parseInt(args[4]);
+
+		Writer output = new BufferedWriter(new FileWriter(args[2]));
+		long startTime = System.nanoTime();
+		try
+		{
+			new BatchSolver(timeLimit, output).solve(first, last, threads);
+		}
+		finally
+		{
+			output.close();
+		}
+		System.out.println(String.format("Solved %d deals in %d ms", last
+				- first + 1, (System.nanoTime() - startTime) / 1000000));
+	}
+}
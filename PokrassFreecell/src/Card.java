@@ -1,121 +1,138 @@
 import java.util.Comparator;
-import java.awt.*;
-import javax.swing.*;
 
 /**
- * Card class creates card objects that keep track of rank, suit, image,
- * placement, size, and face up/down
+ * Card class holds the rank and suit of a card, and nothing else. There are
+ * only 52 cards, made once and shared by everything, so two cards with the
+ * same rank and suit are the same object. A card never changes, so it can be
+ * used from any thread and kept in any number of games at once
+ * 
+ * Every card has the byte code used by GameState, and the card of a code is
+ * found without creating anything, so a game can be kept as an array of codes
+ * and turned back into cards when needed. Where a card is drawn and if it is
+ * face up is kept by its CardView on the table
  * 
  * @author Michelle Pokrass
  * 
  */
-public class Card extends Movable implements Comparable<Card>
+public final class Card implements Comparable<Card>
 {
-	private int rank; // A -1, 2 - 10, J Q K
-
-	private int suit; // D - 1, C - 2, H - 3, S - 4
-
-	private boolean isFaceUp;
+	// Every card, indexed by its code
+	private static final Card[] CARDS = new Card[64];
 
-	private static Image backgroundImage = new ImageIcon("images\\redback.png")
-			.getImage();
+	static
+	{
+		for (int suit = 1; suit <= 4; suit++)
+		{
+			for (int rank = 1; rank <= 13; rank++)
+			{
+				CARDS[GameState.card(rank, suit)] = new Card(rank, suit);
+			}
+		}
+	}
 
-	public static final int WIDTH = backgroundImage.getWidth(null);
+	private final int rank; // A -1, 2 - 10, J Q K
 
-	public static final int HEIGHT = backgroundImage.getHeight(null);
+	private final int suit; // D - 1, C - 2, H - 3, S - 4
 
-	private Image image;
+	private final byte code;
 
 	/**
-	 * Creates a new card and sets it rank, suit, image, and size
+	 * Creates a card, which is only done once for each rank and suit
 	 * 
 	 * @param rank
 	 *            the integer rank of the card
 	 * @param suit
 	 *            the integer suit of the card
 	 */
-	public Card(int rank, int suit)
+	private Card(int rank, int suit)
 	{
-		super(0, 0, 0, 0);
 		this.rank = rank;
 		this.suit = suit;
-		isFaceUp = false;
-		// Get the unique image file of the card
-		String imageFile = "images\\" + " dchs".charAt(suit) + rank + ".png";
-		image = new ImageIcon(imageFile).getImage();
-		// Set the size of the card based on the image size
-		setSize(image.getWidth(null), image.getHeight(null));
+		code = GameState.card(rank, suit);
 	}
 
 	/**
-	 * Calls the other constructor with the rank and suit as integers
+	 * Returns the card with a rank and suit
 	 * 
-	 * @param str
-	 *            the card value, and suit in string form, for example "AD" or
-	 *            "4S"
+	 * @param rank
+	 *            the integer rank of the card
+	 * @param suit
+	 *            the integer suit of the card
+	 * @return the shared Card
+	 * @throws IllegalArgumentException
+	 *             if there is no such card
 	 */
-	public Card(String str)
+	public static Card of(int rank, int suit)
 	{
-		this(" A23456789TJQK".indexOf(str.charAt(0)), " DCHS".indexOf(str
-				.charAt(1)));
+		if (rank < 1 || rank > 13 || suit < 1 || suit > 4)
+			throw new IllegalArgumentException("There is no card of rank "
+					+ rank + " and suit " + suit);
+		return CARDS[GameState.card(rank, suit)];
 	}
 
 	/**
-	 * Returns the integer rank of the card
+	 * Returns the card with a byte code used by GameState
 	 * 
-	 * @return the integer rank of the card
+	 * @param code
+	 *            the byte code of the card
+	 * @return the shared Card
+	 * @throws IllegalArgumentException
+	 *             if the code is not a card
 	 */
-	public int getRank()
+	public static Card fromCode(byte code)
 	{
-		return rank;
+		Card card = code > 0 && code < CARDS.length ? CARDS[code] : null;
+		if (card == null)
+			throw new IllegalArgumentException(code + " is not a card code");
+		return card;
 	}
 
 	/**
-	 * Returns the integer suit of the card
+	 * Returns the card written in String form
 	 * 
-	 * @return the integer suit of the card
+	 * @param str
+	 *            the card value, and suit in string form, for example "AD" or
+	 *            "4S"
+	 * @return the shared Card
+	 * @throws IllegalArgumentException
+	 *             if the String is not a card
 	 */
-	public int getSuit()
+	public static Card valueOf(String str)
 	{
-		return suit;
+		if (str.length() != 2)
+			throw new IllegalArgumentException(str + " is not a card");
+		return of(" A23456789TJQK".indexOf(str.charAt(0)), " DCHS"
+				.indexOf(str.charAt(1)));
 	}
 
 	/**
-	 * Return if the card is face up or face down
+	 * Returns the integer rank of the card
 	 * 
-	 * @return true if the card is face up, false if it is face down
+	 * @return the integer rank of the card
 	 */
-	public boolean isFaceUp()
+	public int getRank()
 	{
-		return isFaceUp;
+		return rank;
 	}
 
 	/**
-	 * Returns true if the parameter equals this card
+	 * Returns the integer suit of the card
 	 * 
-	 * @param other
-	 *            the object to be checked
-	 * @return true if the object is the same as this card (same rank and suit)
+	 * @return the integer suit of the card
 	 */
-	public boolean equals(Object other)
+	public int getSuit()
 	{
-		// If the object is not a card, return false
-		if (!(other instanceof Card))
-			return false;
-		// Cast the object as a card
-		Card otherCard = (Card) other;
-		// Return if the ranks and suits are equal
-		return ((this.rank == otherCard.rank) && (this.suit == otherCard.suit));
-
+		return suit;
 	}
 
 	/**
-	 * Flip the card over; if it is face down put it face up and if it is face
-	 * up put it face down
+	 * Returns the card as the byte code used by GameState
+	 * 
+	 * @return the byte code of the card
 	 */
-	public void flip()
+	public byte getCode()
 	{
-		isFaceUp = !isFaceUp;
+		return code;
 	}
 
 	/**
@@ -142,8 +159,7 @@ public class Card extends Movable implements Comparable<Card>
 	 */
 	public String toString()
 	{
-		return String.format("%s%s", "XA23456789TJQK".charAt(this.rank),
-				"YDCHS".charAt(this.suit));
+		return GameState.cardToString(code);
 	}
 
 	/**
@@ -179,20 +195,6 @@ public class Card extends Movable implements Comparable<Card>
 			return false;
 	}
 
-	/**
-	 * Draws a card in a Graphics context
-	 * 
-	 * @param g
-	 *            Graphics to draw the card in
-	 */
-	public void draw(Graphics g)
-	{
-		if (isFaceUp)
-			g.drawImage(image, x, y, null);
-		else
-			g.drawImage(backgroundImage, x, y, null);
-	}
-
 	/**
 	 * A comparator that compares using rank order instead of suit order
 	 */
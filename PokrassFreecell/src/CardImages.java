@@ -0,0 +1,328 @@
+import java.awt.Dimension;
+import java.awt.Image;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import javax.imageio.ImageIO;
+import javax.swing.SwingUtilities;
+
+/**
+ * Keeps the card images for the whole program. Every image is decoded once,
+ * from the images folder on the classpath, so making new cards or starting a
+ * new game never reads a file or decodes an image, and the program does not
+ * depend on the working directory
+ * 
+ * No image is decoded when this class is first used, only the size of a card
+ * is read from the header of the card back. The back, the faces and the icon
+ * are decoded in parallel on background threads, so the window can be shown
+ * straight away. Until an image is ready it is null, and the card is drawn
+ * face down, or as a plain card if the back is not ready either
+ * 
+ * The images folder must be on the classpath, for example
+ * "java -cp bin:images FreeCellMain"
+ * 
+ * @author Michelle Pokrass
+ * 
+ */
+public final class CardImages
+{
+	// The size of every card image, from the header of the card back
+	private static final Dimension SIZE = readSize("redback");
+
+	// Create the images of every card face (indexed by card code), the back
+	// and the window icon. They are filled in by the decoding threads
+	private static final AtomicReferenceArray<Image> FACES = new AtomicReferenceArray<Image>(
+			64);
+
+	private static volatile Image back;
+
+	private static volatile Image icon;
+
+	// Counts down the images still being decoded (every face, the back and
+	// the icon)
+	private static final CountDownLatch decoding = new CountDownLatch(54);
+
+	// Run on the Event Dispatch Thread once every image is ready
+	private static final List<Runnable> whenLoaded = new ArrayList<Runnable>();
+
+	static
+	{
+		// Decode on a few daemon threads, which end when the work is done
+		ExecutorService decoders = Executors.newFixedThreadPool(Math.min(4,
+				Runtime.getRuntime().availableProcessors()),
+				new ThreadFactory() {
+					public Thread newThread(Runnable task)
+					{
+						Thread thread = new Thread(task, "Card images");
+						thread.setDaemon(true);
+						return thread;
+					}
+				});
+		decoders.execute(new Runnable() {
+			public void run()
+			{
+				back = decode("redback");
+				decoded();
+			}
+		});
+		for (int suit = 1; suit <= 4; suit++)
+		{
+			for (int rank = 1; rank <= 13; rank++)
+			{
+				final int code = GameState.card(rank, suit);
+				final String name = " dchs".charAt(suit) + "" + rank;
+				decoders.execute(new Runnable() {
+					public void run()
+					{
+						FACES.set(code, decode(name));
+						decoded();
+					}
+				});
+			}
+		}
+		decoders.execute(new Runnable() {
+			public void run()
+			{
+				icon = decode("ace");
+				decoded();
+			}
+		});
+		decoders.shutdown();
+	}
+
+	/**
+	 * Stops anyone creating this class, which only has static methods
+	 */
+	private CardImages()
+	{
+	}
+
+	/**
+	 * Returns the image of the face of a card
+	 * 
+	 * @param rank
+	 *            the integer rank of the card
+	 * @param suit
+	 *            the integer suit of the card
+	 * @return the shared Image of the card, which must not be changed, or
+	 *         null if it is not ready
+	 */
+	public static Image face(int rank, int suit)
+	{
+		return FACES.get(GameState.card(rank, suit));
+	}
+
+	/**
+	 * Returns the image of the back of a card
+	 * 
+	 * @return the shared Image of the card back, or null if it is not ready
+	 */
+	public static Image back()
+	{
+		return back;
+	}
+
+	/**
+	 * Returns the size of a card, which every card image has
+	 * 
+	 * @return the width of a card in pixels
+	 */
+	public static int width()
+	{
+		return SIZE.width;
+	}
+
+	/**
+	 * Returns the size of a card, which every card image has
+	 * 
+	 * @return the height of a card in pixels
+	 */
+	public static int height()
+	{
+		return SIZE.height;
+	}
+
+	/**
+	 * Returns the window icon (the ace of spades)
+	 * 
+	 * @return the shared Image of the icon, or null if it is not ready
+	 */
+	public static Image icon()
+	{
+		return icon;
+	}
+
+	/**
+	 * Checks if every image has been decoded
+	 * 
+	 * @return true if the faces, the back and the icon are ready, false
+	 *         otherwise
+	 */
+	public static boolean isLoaded()
+	{
+		return decoding.getCount() == 0;
+	}
+
+	/**
+	 * Waits until every image has been decoded
+	 * 
+	 * @throws InterruptedException
+	 *             if the thread was interrupted while waiting
+	 */
+	public static void awaitLoaded() throws InterruptedException
+	{
+		decoding.await();
+	}
+
+	/**
+	 * Runs something once every image has been decoded, on the Event
+	 * Dispatch Thread, or straight away if they already are
+	 * 
+	 * @param action
+	 *            the Runnable to run
+	 */
+	public static void whenLoaded(Runnable action)
+	{
+		synchronized (whenLoaded)
+		{
+			if (!isLoaded())
+			{
+				whenLoaded.add(action);
+				return;
+			}
+		}
+		action.run();
+	}
+
+	/**
+	 * Decodes an image on a decoding thread. An image that cannot be read is
+	 * left out, and its card stays face down
+	 * 
+	 * @param name
+	 *            the String file name of the image, without ".png"
+	 * @return the decoded Image, or null if it could not be read
+	 */
+	private static Image decode(String name)
+	{
+		try
+		{
+			return load(name);
+		}
+		catch (IllegalStateException e)
+		{
+			System.err.println(e.getMessage());
+			return null;
+		}
+	}
+
+	/**
+	 * Counts an image as done, once it has been stored where it is read
+	 * from, and hands out the waiting actions once it is the last one
+	 */
+	private static void decoded()
+	{
+		decoding.countDown();
+		if (isLoaded())
+		{
+			List<Runnable> actions;
+			synchronized (whenLoaded)
+			{
+				actions = new ArrayList<Runnable>(whenLoaded);
+				whenLoaded.clear();
+			}
+			for (Runnable action : actions)
+				SwingUtilities.invokeLater(action);
+		}
+	}
+
+	/**
+	 * Reads the size of an image from its PNG header, without decoding it
+	 * 
+	 * @param name
+	 *            the String file name of the image, without ".png"
+	 * @return the Dimension of the image
+	 */
+	private static Dimension readSize(String name)
+	{
+		try
+		{
+			DataInputStream input = new DataInputStream(find(name)
+					.openStream());
+			try
+			{
+				// The signature, then the length and type of the first chunk,
+				// which is always IHDR and starts with the width and height
+				long signature = input.readLong();
+				input.readInt();
+				int type = input.readInt();
+				if (signature != 0x89504E470D0A1A0AL || type != 0x49484452)
+					throw new IllegalStateException("Card image " + name
+							+ ".png is not a PNG image");
+				return new Dimension(input.readInt(), input.readInt());
+			}
+			finally
+			{
+				input.close();
+			}
+		}
+		catch (IOException e)
+		{
+			throw new IllegalStateException("Card image " + name
+					+ ".png could not be read", e);
+		}
+	}
+
+	/**
+	 * Finds an image on the classpath
+	 * 
+	 * @param name
+	 *            the String file name of the image, without ".png"
+	 * @return the URL of the image
+	 */
+	private static URL find(String name)
+	{
+		URL resource = CardImages.class.getResource("/" + name + ".png");
+		if (resource == null)
+			throw new IllegalStateException("Card image " + name
+					+ ".png is not on the classpath");
+		return resource;
+	}
+
+	/**
+	 * Reads and decodes one image from the classpath
+	 * 
+	 * @param name
+	 *            the String file name of the image, without ".png"
+	 * @return the decoded Image
+	 */
+	private static Image load(String name)
+	{
+		URL resource = find(name);
+		try
+		{
+			InputStream input = resource.openStream();
+			try
+			{
+				return ImageIO.read(input);
+			}
+			finally
+			{
+				input.close();
+			}
+		}
+		catch (IOException e)
+		{
+			throw new IllegalStateException("Card image " + name
+					+ ".png could not be read", e);
+		}
+	}
+}
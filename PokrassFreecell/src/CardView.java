@@ -0,0 +1,109 @@
+import java.awt.Color;
+import java.awt.Graphics;
+import java.awt.Image;
+
+/**
+ * CardView class shows a Card on the table. It keeps track of where the card
+ * is drawn, its size, and if it is face up or face down, while the Card
+ * itself only holds the rank and suit. The table has one view for each card,
+ * which the hands hold and the mouse and animations move
+ * 
+ * @author Michelle Pokrass
+ * 
+ */
+@SuppressWarnings("serial")
+public class CardView extends Movable
+{
+	public static final int WIDTH = CardImages.width();
+
+	public static final int HEIGHT = CardImages.height();
+
+	// Drawn in place of a card while its images are still being decoded
+	private static final Color PLACEHOLDER = new Color(160, 30, 45);
+
+	private final Card card;
+
+	private boolean isFaceUp;
+
+	/**
+	 * Creates a new face down view of a card, sized like the card images
+	 * 
+	 * @param card
+	 *            the Card to show
+	 */
+	public CardView(Card card)
+	{
+		// Every card image is the size of the back, so the card can be made
+		// before its face has been decoded
+		super(0, 0, WIDTH, HEIGHT);
+		this.card = card;
+		isFaceUp = false;
+	}
+
+	/**
+	 * Returns the card this view shows
+	 * 
+	 * @return the shared Card
+	 */
+	public Card getCard()
+	{
+		return card;
+	}
+
+	/**
+	 * Return if the card is face up or face down
+	 * 
+	 * @return true if the card is face up, false if it is face down
+	 */
+	public boolean isFaceUp()
+	{
+		return isFaceUp;
+	}
+
+	/**
+	 * Flip the card over; if it is face down put it face up and if it is face
+	 * up put it face down
+	 */
+	public void flip()
+	{
+		isFaceUp = !isFaceUp;
+	}
+
+	/**
+	 * Returns the card of this view in String form
+	 * 
+	 * @return the string representation of the card, for example "4D"
+	 */
+	public String toString()
+	{
+		return card.toString();
+	}
+
+	/**
+	 * Draws the card in a Graphics context
+	 * 
+	 * @param g
+	 *            Graphics to draw the card in
+	 */
+	public void draw(Graphics g)
+	{
+		// Skip the card if it is outside the area being repainted
+		if (!g.hitClip(x, y, width, height))
+			return;
+		// Draw the card face down while its face is still being decoded,
+		// and as a plain card while the back is
+		Image image = isFaceUp ? CardImages.face(card.getRank(), card
+				.getSuit()) : null;
+		if (image == null)
+			image = CardImages.back();
+		if (image != null)
+		{
+			g.drawImage(image, x, y, null);
+			return;
+		}
+		g.setColor(PLACEHOLDER);
+		g.fillRoundRect(x, y, width - 1, height - 1, 8, 8);
+		g.setColor(Color.WHITE);
+		g.drawRoundRect(x, y, width - 1, height - 1, 8, 8);
+	}
+}
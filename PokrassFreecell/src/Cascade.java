@@ -1,6 +1,5 @@
-import java.awt.Color;
-import java.awt.Graphics;
 import java.awt.Point;
+import java.util.Arrays;
 
 /**
  * Creates a new hand of cards that keeps track of placement, the cards it
@@ -11,6 +10,13 @@ import java.awt.Point;
  */
 public class Cascade extends Hand
 {
+	// The distance between the tops of two cards in a cascade
+	static final int CARD_OFFSET = (int) (.25 * CardView.HEIGHT);
+
+	// For every card, the length of the run (alternating colour, decreasing
+	// rank) that ends at it. A card's run only depends on the cards below it,
+	// so adding or removing the top card never changes the others
+	private int[] runs = new int[GameState.CASCADE_CAPACITY];
 
 	/**
 	 * Creates a new cascade with the given position and card size
@@ -22,7 +28,7 @@ public class Cascade extends Hand
 	 */
 	Cascade(int x, int y)
 	{
-		super(x, y, Card.WIDTH, Card.HEIGHT);
+		super(x, y, CardView.WIDTH, CardView.HEIGHT);
 	}
 
 	/**
@@ -40,10 +46,10 @@ public class Cascade extends Hand
 		}
 		// If the item is a card, check if its rank is one less than the top
 		// card rank and its suit is a different colour. If so, return true
-		if (item instanceof Card)
+		if (item instanceof CardView)
 		{
-			Card topCard = this.getTopCard();
-			Card cardToPlace = (Card) item;
+			Card topCard = this.getTopCard().getCard();
+			Card cardToPlace = ((CardView) item).getCard();
 			if ((cardToPlace.getSuit() % 2 != topCard.getSuit() % 2)
 					&& (cardToPlace.getRank() + 1 == topCard.getRank()))
 			{
@@ -59,9 +65,9 @@ public class Cascade extends Hand
 		// its suit is a different colour
 		else if (item instanceof Hand)
 		{
-			Card topCard = this.getTopCard();
+			Card topCard = this.getTopCard().getCard();
 			Hand handToPlace = (Hand) item;
-			Card bottomCard = handToPlace.getBottomCard();
+			Card bottomCard = handToPlace.getBottomCard().getCard();
 			if ((bottomCard.getSuit() % 2 != topCard.getSuit() % 2)
 					&& (bottomCard.getRank() + 1 == topCard.getRank()))
 			{
@@ -88,9 +94,9 @@ public class Cascade extends Hand
 	public void place(Movable item)
 	{
 		// If the item is a card, cast it as such and add it to this cascade
-		if (item instanceof Card)
+		if (item instanceof CardView)
 		{
-			Card cardToPlace = (Card) item;
+			CardView cardToPlace = (CardView) item;
 			this.add(cardToPlace);
 
 		}
@@ -119,51 +125,11 @@ public class Cascade extends Hand
 	 */
 	public boolean canPickUp(Point point)
 	{
-		// If this cascade contains the point, find the first card (from the
-		// top) that contains the point
-		if (this.contains(point))
-		{
-			for (int index = this.getNoOfCards() - 1; index >= 0; index--)
-			{
-				if (this.getCard(index).contains(point))
-				{
-					// If the top card contains the point, return true
-					if (index == this.getNoOfCards() - 1)
-					{
-						return true;
-					}
-					// Check from the first card that contains the point, to the
-					// top of the cascade
-					else
-					{
-						for (int index2 = index; index2 < this.getNoOfCards() - 1; index2++)
-						{
-							// Check that the colours are alternating
-							boolean correctSuit = this.getCard(index2)
-									.getSuit() % 2 != this.getCard(index2 + 1)
-									.getSuit() % 2;
-							// Check that the rank is one greater than the next
-							// rank
-							boolean correctRank = this.getCard(index2)
-									.getRank() - 1 == this.getCard(index2 + 1)
-									.getRank();
-
-							if (!(correctSuit && correctRank))
-							{
-								return false;
-							}
-						}
-						return true;
-					}
-				}
-
-			}
-			return false;
-		}
-
-		else
-			return false;
-
+		// The card containing the point must be part of the run on top of
+		// this cascade
+		int index = this.cardIndexAt(point);
+		return index >= 0
+				&& index >= this.getNoOfCards() - this.getMovableRun();
 	}
 
 	/**
@@ -178,68 +144,129 @@ public class Cascade extends Hand
 		// Check if this can be picked up
 		if (this.canPickUp(point))
 		{
-			// Go through every card (from the top) to find the card that first
-			// contains the point
-			for (int index = hand.size() - 1; index >= 0; index--)
+			int index = this.cardIndexAt(point);
+			CardView card = this.getCard(index);
+			// If it is one card, remove and return it
+			if (index == hand.size() - 1)
+			{
+				this.remove(index);
+				return card;
+			}
+			else
 			{
-				Card card = this.getCard(index);
-				if (card.contains(point))
+				// Create a new cascade with the cards from the point to the
+				// top
+				Hand newCascade = new Cascade(card.x, card.y);
+				int originalSize = this.hand.size();
+				for (int index2 = index; index2 < originalSize; index2++)
 				{
-					// If it is one card, remove and return it
-					if (index == hand.size() - 1)
-					{
-						this.remove(index);
-						return card;
-					}
-					else
-					{
-						// Create a new cascade
-						Hand newCascade = new Cascade(card.x, card.y);
-						int originalSize = this.hand.size();
-						// Run this loop as many times as there are cards that
-						// must be removed
-						for (int index2 = index; index2 < originalSize; index2++)
-						{
-							// Remove the card and add it to the new cascade
-							Card removed = this.remove(index);
-							newCascade.add(removed);
-
-						}
-						// Return the new cascade
-						return newCascade;
-					}
-
+					newCascade.add(this.getCard(index2));
 				}
-
+				// Remove the cards from the top down, so no other card has to
+				// have its run counted again
+				for (int index2 = originalSize - 1; index2 >= index; index2--)
+				{
+					this.remove(index2);
+				}
+				// Return the new cascade
+				return newCascade;
 			}
 		}
 		return null;
 	}
 
+	/**
+	 * Finds the card containing a point without checking every card. The
+	 * cards are a fixed distance apart, so the point gives the index of the
+	 * highest card it could be in
+	 * 
+	 * @param point
+	 *            the Point to find
+	 * @return the integer index of the top most card containing the point, or
+	 *         -1 if no card contains it
+	 */
+	public int cardIndexAt(Point point)
+	{
+		if (this.isEmpty() || point.y < this.y)
+			return -1;
+		int index = Math.min((point.y - this.y) / CARD_OFFSET,
+				this.getNoOfCards() - 1);
+		if (this.getCard(index).contains(point))
+			return index;
+		return -1;
+	}
+
+	/**
+	 * Returns the amount of cards on top of this cascade that form a proper
+	 * cascade (alternating colour, decreasing rank), in constant time
+	 * 
+	 * @return the integer length of the run, 0 if this cascade is empty
+	 */
+	public int getMovableRun()
+	{
+		if (this.isEmpty())
+			return 0;
+		return runs[this.getNoOfCards() - 1];
+	}
+
+	/**
+	 * Returns the deepest card that can be lifted, which is the bottom card of
+	 * the run on top of this cascade
+	 * 
+	 * @return the CardView at the bottom of the run, or null if this cascade is
+	 *         empty
+	 */
+	public CardView getDeepestMovableCard()
+	{
+		if (this.isEmpty())
+			return null;
+		return this.getCard(this.getNoOfCards() - this.getMovableRun());
+	}
+
+	/**
+	 * Sets the run length of the cards from an index to the top
+	 * 
+	 * @param start
+	 *            the integer index of the first card to set
+	 */
+	private void updateRuns(int start)
+	{
+		for (int index = start; index < this.getNoOfCards(); index++)
+		{
+			// A card continues the run of the card below it if it is a
+			// different colour and one rank less
+			Card card = this.getCard(index).getCard();
+			Card below = index > 0 ? this.getCard(index - 1).getCard() : null;
+			if (below != null && below.getSuit() % 2 != card.getSuit() % 2
+					&& below.getRank() - 1 == card.getRank())
+				runs[index] = runs[index - 1] + 1;
+			else
+				runs[index] = 1;
+		}
+	}
+
 	/**
 	 * Adds a card to this cascade, changing the size
 	 * 
 	 * @param card
 	 *            the card to be added
 	 */
-	public void add(Card card)
+	public void add(CardView card)
 	{
-		int yPos;
-		// If this cascade is empty, set the y position of this card to the
-		// cascade y position
-		if (this.isEmpty())
-			yPos = this.y;
 		// Set the y position of this card to a quarter of a card greater than
-		// the last card in this cascade
-		else
-			yPos = this.getTopCard().y + (int) (.25 * Card.HEIGHT);
+		// the place of the last card in this cascade, counted from the cascade
+		// y position so it does not matter where the last card is drawn
+		int yPos = this.y + this.getNoOfCards() * CARD_OFFSET;
 		// Set the new location of the card
 		card.setLocation(x, yPos);
 		// Correct the height of the card
-		this.height = Card.HEIGHT
-				+ (int) (this.getNoOfCards() * (0.25) * (Card.HEIGHT));
-		// Add the card to this cascade
+		this.height = CardView.HEIGHT
+				+ (int) (this.getNoOfCards() * (0.25) * (CardView.HEIGHT));
+		// Add the card to this cascade and count its run
 		hand.add(card);
+		if (hand.size() > runs.length)
+			runs = Arrays.copyOf(runs, 2 * runs.length);
+		updateRuns(hand.size() - 1);
 	}
 
 	/**
@@ -249,19 +276,27 @@ public class Cascade extends Hand
 	 *            the card to be removed
 	 * @return true if this cascade contained the hand, false otherwise
 	 */
-	public boolean remove(Card card)
+	public boolean remove(CardView card)
 	{
 		// Set this height to the card height if it will be empty after the
 		// remove
 		if (this.getNoOfCards() == 1)
-			this.height = Card.HEIGHT;
+			this.height = CardView.HEIGHT;
 		// Modify the height to the correct size based on the size of the
 		// cascade
 		else
-			this.height = Card.HEIGHT
-					+ (int) ((this.getNoOfCards() - 2) * (0.25) * (Card.HEIGHT));
-		// Remove the card from this cascade
-		return hand.remove(card);
+			this.height = CardView.HEIGHT
+					+ (int) ((this.getNoOfCards() - 2) * (0.25)
+					* (CardView.HEIGHT));
+		// Remove the card from this cascade. Only the cards that were above
+		// it need their runs counted again, and there are none when it was
+		// the top card
+		int index = hand.indexOf(card);
+		if (index < 0)
+			return false;
+		hand.remove(index);
+		updateRuns(index);
+		return true;
 	}
 
 	/**
@@ -271,16 +306,21 @@ public class Cascade extends Hand
 	 *            the integer index of the card to remove
 	 * @return returns the card that was removed
 	 */
-	public Card remove(int index)
+	public CardView remove(int index)
 	{
+		// Remove the card at the specified index
+		CardView card = hand.remove(index);
+		updateRuns(index);
 		// If the cascade is empty, set its height to the card height
 		if (this.isEmpty())
-			this.height = Card.HEIGHT;
-		// Otherwise, subtract a quarter card from the height
+			this.height = CardView.HEIGHT;
+		// Otherwise, set the height from the cards that are left, so the
+		// bounds always cover every card when repainting
 		else
-			this.height -= (0.25 * Card.HEIGHT);
-		// Remove the card at the specified index
-		return hand.remove(index);
+			this.height = CardView.HEIGHT
+					+ (int) ((this.getNoOfCards() - 1) * (0.25)
+					* (CardView.HEIGHT));
+		return card;
 
 	}
 
@@ -304,17 +344,18 @@ public class Cascade extends Hand
 	public Movable pickUp(Movable item)
 	{
 		// If the item is a card, cast it and remove it
-		if (item instanceof Card)
+		if (item instanceof CardView)
 		{
-			Card card = (Card) item;
+			CardView card = (CardView) item;
 			this.remove(card);
 			return card;
 		}
-		// If the item is a cascade, cast it and remove every card in order
+		// If the item is a cascade, cast it and remove every card, from the
+		// top down
 		else
 		{
 			Hand cascade = (Cascade) item;
-			for (int index = 0; index < cascade.getNoOfCards(); index++)
+			for (int index = cascade.getNoOfCards() - 1; index >= 0; index--)
 			{
 				this.remove(cascade.getCard(index));
 			}
@@ -322,16 +363,4 @@ public class Cascade extends Hand
 		}
 
 	}
-
-	/**
-	 * Draws this cascade
-	 */
-	public void draw(Graphics g)
-	{
-		g.setColor(Color.BLACK);
-		g.draw3DRect(x + 1, y + 1, Card.WIDTH - 2, Card.HEIGHT - 2, true);
-		for (Card next : hand)
-			next.draw(g);
-
-	}
 }
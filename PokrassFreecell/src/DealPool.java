@@ -0,0 +1,279 @@
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Keeps a small queue of deals that the solver has already won, so a new game
+ * can start at once with a deal that is known to be winnable. A background
+ * thread solves random deals and adds the ones it wins, waiting while the
+ * queue is full. Each deal is tagged with the length of the solution found,
+ * as a measure of how hard it is
+ * 
+ * The queue is written to a file whenever a deal is added and when the
+ * program ends, so the next start does not have to solve the deals again. The
+ * file is a 4 byte tag, the amount of deals (4 bytes), then the deal number
+ * (8 bytes) and solution length (4 bytes) of each deal
+ * 
+ * @author Michelle Pokrass
+ * 
+ */
+public class DealPool
+{
+	// The tag at the start of a pool file, "FCP1"
+	static final int MAGIC = 0x46435031;
+
+	// The most deals kept ready
+	public static final int CAPACITY = 32;
+
+	// The longest the solver may spend on a deal, in milliseconds. Deals that
+	// take longer are left out, even if they could be won
+	private static final long TIME_LIMIT = 5000;
+
+	private final File file;
+
+	private final BlockingQueue<Deal> deals = new ArrayBlockingQueue<Deal>(
+			CAPACITY);
+
+	private final Random random = new Random();
+
+	private Thread producer;
+
+	/**
+	 * A deal that has been won by the solver
+	 * 
+	 * @author Michelle Pokrass
+	 * 
+	 */
+	public static class Deal
+	{
+		private final long dealNumber;
+
+		private final int solutionLength;
+
+		/**
+		 * Creates a new solved deal
+		 * 
+		 * @param dealNumber
+		 *            the long number of the deal
+		 * @param solutionLength
+		 *            the integer amount of moves in the solution found
+		 */
+		public Deal(long dealNumber, int solutionLength)
+		{
+			this.dealNumber = dealNumber;
+			this.solutionLength = solutionLength;
+		}
+
+		/**
+		 * Returns the number of the deal
+		 * 
+		 * @return the long deal number
+		 */
+		public long getDealNumber()
+		{
+			return dealNumber;
+		}
+
+		/**
+		 * Returns the length of the solution found, which is longer for
+		 * harder deals
+		 * 
+		 * @return the integer amount of moves
+		 */
+		public int getSolutionLength()
+		{
+			return solutionLength;
+		}
+	}
+
+	/**
+	 * Creates a new pool, with the deals saved in a file if there is one
+	 * 
+	 * @param file
+	 *            the File the deals are kept in between runs
+	 * @throws IOException
+	 *             if the file exists but could not be read or is not a pool
+	 */
+	public DealPool(File file) throws IOException
+	{
+		this.file = file;
+		if (file.exists())
+			load();
+	}
+
+	/**
+	 * Starts solving deals in the background, and saves the pool when the
+	 * program ends
+	 */
+	public synchronized void start()
+	{
+		if (producer != null)
+			return;
+		producer = new Thread(new Runnable() {
+			public void run()
+			{
+				produce();
+			}
+		}, "Deal pool");
+		// Solve at a low priority, and never keep the program open
+		producer.setDaemon(true);
+		producer.setPriority(Thread.MIN_PRIORITY);
+		producer.start();
+
+		Runtime.getRuntime().addShutdownHook(new Thread(new Runnable() {
+			public void run()
+			{
+				try
+				{
+					save();
+				}
+				catch (IOException e)
+				{
+					System.err.println("The deal pool was not saved: "
+							+ e.getMessage());
+				}
+			}
+		}));
+	}
+
+	/**
+	 * Stops solving deals. The deals in the pool can still be taken
+	 */
+	public synchronized void stop()
+	{
+		if (producer != null)
+		{
+			producer.interrupt();
+			producer = null;
+		}
+	}
+
+	/**
+	 * Takes the next deal without waiting
+	 * 
+	 * @return the Deal taken, or null if no deal is ready
+	 */
+	public Deal take()
+	{
+		return deals.poll();
+	}
+
+	/**
+	 * Returns the amount of deals ready
+	 * 
+	 * @return the integer amount of deals
+	 */
+	public int size()
+	{
+		return deals.size();
+	}
+
+	/**
+	 * Solves random deals and adds the winnable ones, until interrupted
+	 */
+	private void produce()
+	{
+		Solver solver = new Solver();
+		solver.setTimeLimit(TIME_LIMIT);
+		GameState state = new GameState();
+		try
+		{
+			while (!Thread.currentThread().isInterrupted())
+			{
+				long dealNumber = 1 + random.nextInt(TablePanel.MAX_DEAL);
+				Deals.deal(dealNumber, state);
+				SolveResult result = solver.solve(state);
+				if (!result.isSolved())
+					continue;
+				// Wait for room, then keep the new deal on disk too
+				deals.put(new Deal(dealNumber, result.getMoves().length));
+				try
+				{
+					save();
+				}
+				catch (IOException e)
+				{
+					System.err.println("The deal pool was not saved: "
+							+ e.getMessage());
+				}
+			}
+		}
+		catch (InterruptedException e)
+		{
+			// Stopped while waiting for room
+		}
+	}
+
+	/**
+	 * Writes the deals in the pool to its file. The file is replaced in one
+	 * step, so it is never left half written
+	 * 
+	 * @throws IOException
+	 *             if the file could not be written
+	 */
+	public synchronized void save() throws IOException
+	{
+		List<Deal> ready = new ArrayList<Deal>(deals);
+		ByteBuffer buffer = ByteBuffer.allocate(8 + 12 * ready.size());
+		buffer.putInt(MAGIC);
+		buffer.putInt(ready.size());
+		for (Deal deal : ready)
+		{
+			buffer.putLong(deal.getDealNumber());
+			buffer.putInt(deal.getSolutionLength());
+		}
+
+		File temporary = new File(file.getPath() + ".tmp");
+		OutputStream output = new FileOutputStream(temporary);
+		try
+		{
+			output.write(buffer.array());
+		}
+		finally
+		{
+			output.close();
+		}
+		Files.move(temporary.toPath(), file.toPath(),
+				StandardCopyOption.REPLACE_EXISTING);
+	}
+
+	/**
+	 * Adds the deals saved in the pool's file
+	 * 
+	 * @throws IOException
+	 *             if the file could not be read or is not a pool
+	 */
+	private void load() throws IOException
+	{
+		ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(file.toPath()));
+		try
+		{
+			if (buffer.getInt() != MAGIC)
+				throw new IOException(file + " is not a deal pool");
+			int count = buffer.getInt();
+			// Counted in longs, so a huge count cannot overflow past the check
+			if (count < 0 || 12L * count > buffer.remaining())
+				throw new IOException(file + " is not a complete deal pool");
+			for (int index = 0; index < count; index++)
+			{
+				long dealNumber = buffer.getLong();
+				int solutionLength = buffer.getInt();
+				deals.offer(new Deal(dealNumber, solutionLength));
+			}
+		}
+		catch (BufferUnderflowException e)
+		{
+			throw new IOException(file + " is not a complete deal pool");
+		}
+	}
+}
@@ -0,0 +1,61 @@
+/**
+ * Creates numbered deals, using the same numbering as the classic Microsoft
+ * Freecell (deals 1 - 32000 and beyond). The deal number seeds the Microsoft
+ * random number generator and the deck is shuffled in place
+ * 
+ * @author Michelle Pokrass
+ * 
+ */
+public class Deals
+{
+	// The Microsoft deck is in rank order, with the suits in C D H S order
+	private static final int[] SUIT_ORDER = { 2, 1, 3, 4 };
+
+	/**
+	 * Fills an array with the 52 cards of a deal, in the order they are dealt
+	 * to the cascades (card n goes to cascade n % 8)
+	 * 
+	 * @param dealNumber
+	 *            the long number of the deal
+	 * @param cards
+	 *            the byte array to fill with card codes, at least 52 long
+	 */
+	public static void deal(long dealNumber, byte[] cards)
+	{
+		// Start with the cards in reverse order, as Microsoft does
+		int[] deck = new int[52];
+		for (int index = 0; index < 52; index++)
+			deck[index] = 51 - index;
+		// Swap every position with a random one that has not been dealt yet
+		long seed = dealNumber;
+		for (int index = 0; index < 52; index++)
+		{
+			seed = (seed * 214013 + 2531011) & 0x7fffffffL;
+			int random = (int) (seed >> 16);
+			int swap = 51 - random % (52 - index);
+			int card = deck[index];
+			deck[index] = deck[swap];
+			deck[swap] = card;
+		}
+		for (int index = 0; index < 52; index++)
+			cards[index] = GameState.card(deck[index] / 4 + 1,
+					SUIT_ORDER[deck[index] % 4]);
+	}
+
+	/**
+	 * Deals a numbered game into a game state
+	 * 
+	 * @param dealNumber
+	 *            the long number of the deal
+	 * @param state
+	 *            the GameState to deal into (it is cleared first)
+	 */
+	public static void deal(long dealNumber, GameState state)
+	{
+		byte[] cards = new byte[52];
+		deal(dealNumber, cards);
+		state.clear();
+		for (int index = 0; index < 52; index++)
+			state.addToCascade(index % GameState.CASCADES, cards[index]);
+	}
+}
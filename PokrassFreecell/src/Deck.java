@@ -4,7 +4,8 @@ import java.util.Random;
 
 /**
  * Creates a list of 52 cards that emulates a standard deck. Keeps track of the
- * top card, order, etc.
+ * top card, order, etc. The cards are the shared Card values, so a deck is
+ * only an order of them and costs nothing to create
  * 
  * @author Michelle Pokrass
  * 
@@ -29,7 +30,7 @@ public class Deck
 			// Go through each rank
 			for (int rank = 1; rank <= 13; rank++)
 			{
-				deck[topCard++] = new Card(rank, suit);
+				deck[topCard++] = Card.of(rank, suit);
 			}
 		}
 
@@ -51,22 +52,57 @@ public class Deck
 	 */
 	public void shuffle()
 	{
-		// Create a new deck and a new random class
-		Card[] deck2 = new Card[52];
-		Random rndm = new Random();
-		// Find a random unfilled space in the new deck for every card
+		shuffle(new Random());
+	}
+
+	/**
+	 * Shuffles the deck the same way every time for the same seed
+	 * 
+	 * @param seed
+	 *            the long seed of the shuffle
+	 */
+	public void shuffle(long seed)
+	{
+		shuffle(new Random(seed));
+	}
+
+	/**
+	 * Orders the deck as the numbered deal of the classic Microsoft Freecell,
+	 * so dealing it gives the same game
+	 * 
+	 * @param dealNumber
+	 *            the long number of the deal (1 - 32000 for the classic deals)
+	 */
+	public void arrangeDeal(long dealNumber)
+	{
+		byte[] order = new byte[52];
+		Deals.deal(dealNumber, order);
+		// Cards are dealt from the end of the deck, so the first card of the
+		// deal goes last
 		for (int card = 0; card < 52; card++)
 		{
-			int randomPosition = rndm.nextInt(52);
-			while (deck2[randomPosition] != null)
-			{
-				randomPosition = rndm.nextInt(52);
-			}
-			// Copy the card to the new deck
-			deck2[randomPosition] = deck[card];
+			deck[51 - card] = Card.fromCode(order[card]);
+		}
+		// Reset the top card
+		topCard = deck.length;
+	}
+
+	/**
+	 * Shuffles the deck in place, swapping each position with a random one at
+	 * or before it (Fisher-Yates), so every order is equally likely
+	 * 
+	 * @param random
+	 *            the Random to shuffle with
+	 */
+	private void shuffle(Random random)
+	{
+		for (int card = deck.length - 1; card > 0; card--)
+		{
+			int randomPosition = random.nextInt(card + 1);
+			Card temp = deck[card];
+			deck[card] = deck[randomPosition];
+			deck[randomPosition] = temp;
 		}
-		// Save the new deck as the old one
-		deck = deck2;
 		// Reset the top card
 		topCard = deck.length;
 	}
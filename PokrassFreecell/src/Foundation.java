@@ -19,7 +19,7 @@ public class Foundation extends Hand
 	 */
 	Foundation(int x, int y)
 	{
-		super(x, y, Card.WIDTH, Card.HEIGHT);
+		super(x, y, CardView.WIDTH, CardView.HEIGHT);
 	}
 
 	/**
@@ -34,12 +34,12 @@ public class Foundation extends Hand
 	public boolean canPlace(Movable item)
 	{
 		// If the item is not a card, return false
-		if (!(item instanceof Card))
+		if (!(item instanceof CardView))
 		{
 			return false;
 		}
 		// Cast the item as a card
-		Card card = (Card) item;
+		Card card = ((CardView) item).getCard();
 		// If this foundation is empty, and the card is an ace, return true
 		if (this.hand.size() == 0)
 		{
@@ -52,9 +52,9 @@ public class Foundation extends Hand
 		{
 			// Check if the suit is the same and the rank of the card is one
 			// greater than that of the top card
-			boolean correctSuit = this.getTopCard().getSuit() == card.getSuit();
-			boolean correctRank = this.getTopCard().getRank() + 1 == card
-					.getRank();
+			Card topCard = this.getTopCard().getCard();
+			boolean correctSuit = topCard.getSuit() == card.getSuit();
+			boolean correctRank = topCard.getRank() + 1 == card.getRank();
 			if (correctSuit && correctRank)
 			{
 				return true;
@@ -75,7 +75,7 @@ public class Foundation extends Hand
 	 */
 	public void place(Movable item)
 	{
-		Card card = (Card) item;
+		CardView card = (CardView) item;
 		this.add(card);
 	}
 
@@ -96,7 +96,7 @@ public class Foundation extends Hand
 	 */
 	public Movable pickUp(Point point)
 	{
-		Card card = this.remove(getNoOfCards() - 1);
+		CardView card = this.remove(getNoOfCards() - 1);
 		return card;
 	}
 
@@ -105,9 +105,9 @@ public class Foundation extends Hand
 	 * location
 	 * 
 	 * @param the
-	 *            Card to add
+	 *            CardView to add
 	 */
-	public void add(Card card)
+	public void add(CardView card)
 	{
 
 		card.setLocation(this.x, this.y);
@@ -132,7 +132,7 @@ public class Foundation extends Hand
 	 */
 	public int getSuit()
 	{
-		return this.getTopCard().getSuit();
+		return this.getTopCard().getCard().getSuit();
 	}
 
 }
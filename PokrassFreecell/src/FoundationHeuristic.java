@@ -0,0 +1,39 @@
+/**
+ * The default solver heuristic: counts the cards that are not home yet, plus
+ * the cards that are sitting on top of a lower card of a cascade, plus the
+ * cards in the freecells
+ * 
+ * @author Michelle Pokrass
+ * 
+ */
+public class FoundationHeuristic implements Heuristic
+{
+	/**
+	 * Estimates the distance of a position from being solved
+	 * 
+	 * @param state
+	 *            the GameState to estimate
+	 * @return the integer estimate, 0 if the position is solved
+	 */
+	public int estimate(GameState state)
+	{
+		int estimate = 52 - state.cardsHome();
+		// A card above a lower ranked card has to be moved out of the way
+		// before the lower card can go home
+		for (int cascade = 0; cascade < GameState.CASCADES; cascade++)
+		{
+			int lowest = 14;
+			for (int index = 0; index < state.cascadeSize(cascade); index++)
+			{
+				int rank = GameState.rank(state.cascadeCard(cascade, index));
+				if (rank > lowest)
+					estimate++;
+				else
+					lowest = rank;
+			}
+		}
+		// Full freecells make every other move harder
+		estimate += GameState.FREECELLS - state.freeFreecells();
+		return estimate;
+	}
+}
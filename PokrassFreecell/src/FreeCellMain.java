@@ -1,14 +1,19 @@
-import javax.swing.ImageIcon;
+import javax.management.JMException;
+import javax.swing.JFileChooser;
 import javax.swing.JFrame;
 import javax.swing.JMenu;
 import javax.swing.JMenuBar;
 import javax.swing.JMenuItem;
+import javax.swing.JOptionPane;
 import javax.swing.JRadioButtonMenuItem;
 import javax.swing.JToggleButton;
+import javax.swing.SwingUtilities;
 
 import java.awt.*;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
+import java.io.File;
+import java.io.IOException;
 
 /**
  * Creates a new frame that keeps track of size and other attributes
@@ -20,6 +25,14 @@ public class FreeCellMain extends JFrame
 {
 	private TablePanel tableArea;
 
+	// The file finished games are added to, in the home folder
+	private static final String ARCHIVE_NAME = "freecell-games.fca";
+
+	// The file the winnable deals are kept in between runs
+	private static final String POOL_NAME = "freecell-deals.fcp";
+
+	private JFileChooser fileChooser;
+
 	/**
 	 * Creates a new frame
 	 */
@@ -30,8 +43,16 @@ public class FreeCellMain extends JFrame
 		setResizable(false);
 		// Position in the middle of the window
 		setLocation(100, 100);
-		// Add in an Icon - Ace of Spades
-		setIconImage(new ImageIcon("images\\ace.png").getImage());
+		// Add in an Icon - Ace of Spades, once it has been decoded
+		CardImages.whenLoaded(new Runnable() {
+			/**
+			 * Sets the icon of the frame
+			 */
+			public void run()
+			{
+				setIconImage(CardImages.icon());
+			}
+		});
 		// Add the TablePanel to the centre of the Frame
 		setLayout(new BorderLayout());
 		tableArea = new TablePanel(this);
@@ -40,6 +61,49 @@ public class FreeCellMain extends JFrame
 		addMenus();
 	}
 
+	/**
+	 * Starts what the table needs but the first frame does not: the archive
+	 * of finished games, the measurements and the pool of winnable deals.
+	 * Called once the frame is showing, so none of it delays the window
+	 */
+	private void startServices()
+	{
+		// Keep every finished game, unless the archive cannot be opened
+		try
+		{
+			tableArea.setArchive(new GameArchive(new File(System
+					.getProperty("user.home"), ARCHIVE_NAME)));
+		}
+		catch (IOException e)
+		{
+			System.err.println("Finished games will not be kept: "
+					+ e.getMessage());
+		}
+		// Let the measurements of the table be read over JMX
+		try
+		{
+			Metrics.register();
+		}
+		catch (JMException e)
+		{
+			System.err.println("The table will not be measured: "
+					+ e.getMessage());
+		}
+		// Start solving deals for new games in the background
+		try
+		{
+			DealPool dealPool = new DealPool(new File(System
+					.getProperty("user.home"), POOL_NAME));
+			dealPool.start();
+			tableArea.setDealPool(dealPool);
+		}
+		catch (IOException e)
+		{
+			System.err.println("New games may not be winnable: "
+					+ e.getMessage());
+		}
+	}
+
 	/**
 	 * Adds the menus to the main frame Includes adding ActionListeners to
 	 * respond to menu commands
@@ -65,6 +129,100 @@ public class FreeCellMain extends JFrame
 		});
 		gameMenu.add(newOption);
 
+		JMenuItem selectOption = new JMenuItem("Select Game...");
+		selectOption.addActionListener(new ActionListener() {
+			/**
+			 * Asks for a deal number and starts that game
+			 * 
+			 * @param event
+			 *            The event that selected this menu option
+			 */
+			public void actionPerformed(ActionEvent event)
+			{
+				String number = JOptionPane.showInputDialog(
+						FreeCellMain.this, "Enter a game number (1 - "
+								+ TablePanel.MAX_DEAL + "):", "Select Game",
+						JOptionPane.QUESTION_MESSAGE);
+				if (number == null)
+					return;
+				try
+				{
+					tableArea.newGame(Long.parseLong(number.trim()));
+				}
+				catch (NumberFormatException e)
+				{
+					JOptionPane.showMessageDialog(FreeCellMain.this, number
+							+ " is not a game number.", "Error",
+							JOptionPane.ERROR_MESSAGE);
+				}
+			}
+		});
+		gameMenu.add(selectOption);
+
+		JMenuItem saveOption = new JMenuItem("Save Game...");
+		saveOption.addActionListener(new ActionListener() {
+			/**
+			 * Asks for a file and saves the game in it
+			 * 
+			 * @param event
+			 *            The event that selected this menu option
+			 */
+			public void actionPerformed(ActionEvent event)
+			{
+				int choice = getFileChooser().showSaveDialog(
+						FreeCellMain.this);
+				if (choice != JFileChooser.APPROVE_OPTION)
+					return;
+				File file = getFileChooser().getSelectedFile();
+				try
+				{
+					tableArea.getRecord().save(file);
+				}
+				catch (IOException e)
+				{
+					JOptionPane.showMessageDialog(FreeCellMain.this,
+							"Could not save the game: " + e.getMessage(),
+							"Error", JOptionPane.ERROR_MESSAGE);
+				}
+			}
+		});
+		gameMenu.add(saveOption);
+
+		JMenuItem openOption = new JMenuItem("Open Game...");
+		openOption.addActionListener(new ActionListener() {
+			/**
+			 * Asks for a saved game and continues it
+			 * 
+			 * @param event
+			 *            The event that selected this menu option
+			 */
+			public void actionPerformed(ActionEvent event)
+			{
+				int choice = getFileChooser().showOpenDialog(
+						FreeCellMain.this);
+				if (choice != JFileChooser.APPROVE_OPTION)
+					return;
+				File file = getFileChooser().getSelectedFile();
+				try
+				{
+					tableArea.loadRecord(GameRecord.load(file));
+				}
+				catch (IOException e)
+				{
+					JOptionPane.showMessageDialog(FreeCellMain.this,
+							"Could not open the game: " + e.getMessage(),
+							"Error", JOptionPane.ERROR_MESSAGE);
+				}
+				catch (IllegalArgumentException e)
+				{
+					JOptionPane.showMessageDialog(FreeCellMain.this,
+							"Could not open the game: " + e.getMessage(),
+							"Error", JOptionPane.ERROR_MESSAGE);
+				}
+			}
+		});
+		gameMenu.add(openOption);
+
 		JMenuItem undo = new JMenuItem("Undo");
 
 		undo.addActionListener(new ActionListener() {
@@ -80,6 +238,38 @@ public class FreeCellMain extends JFrame
 			}
 		});
 		gameMenu.add(undo);
+
+		JMenuItem redo = new JMenuItem("Redo");
+
+		redo.addActionListener(new ActionListener() {
+			/**
+			 * Makes the last undone move again
+			 * 
+			 * @param event
+			 *            The event that selected this menu option
+			 */
+			public void actionPerformed(ActionEvent event)
+			{
+				tableArea.redoMove();
+			}
+		});
+		gameMenu.add(redo);
+
+		JMenuItem hint = new JMenuItem("Hint");
+
+		hint.addActionListener(new ActionListener() {
+			/**
+			 * Looks for a move to suggest, without waiting for it
+			 * 
+			 * @param event
+			 *            The event that selected this menu option
+			 */
+			public void actionPerformed(ActionEvent event)
+			{
+				tableArea.showHint();
+			}
+		});
+		gameMenu.add(hint);
 		// Creates a new menu item for autocomplete
 		JMenu autocompleteMenu = new JMenu("AutoComplete");
 		final JRadioButtonMenuItem autoCompleteOn = new JRadioButtonMenuItem(
@@ -113,18 +303,39 @@ public class FreeCellMain extends JFrame
 	}
 
 	/**
+	 * Returns the file chooser for saved games, creating it the first time
+	 * 
+	 * @return the JFileChooser
+	 */
+	private JFileChooser getFileChooser()
+	{
+		if (fileChooser == null)
+			fileChooser = new JFileChooser();
+		return fileChooser;
+	}
+
+	/**
+	 * Shows the frame as soon as it can. The frame is created on the Event
+	 * Dispatch Thread, while the card faces are still being decoded
+	 * 
 	 * @param args
 	 */
 	public static void main(String[] args)
 	{
-		// Creates a new frame
-		FreeCellMain frame = new FreeCellMain();
-		frame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
-		frame.pack();
-		frame.setVisible(true);
-		// Creates a new panel within the frame
-		TablePanel panel = new TablePanel(frame);
-
+		SwingUtilities.invokeLater(new Runnable() {
+			/**
+			 * Creates and shows the frame
+			 */
+			public void run()
+			{
+				// Creates a new frame
+				FreeCellMain frame = new FreeCellMain();
+				frame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
+				frame.pack();
+				frame.setVisible(true);
+				frame.startServices();
+			}
+		});
 	}
 
 }
@@ -19,7 +19,7 @@ public class Freecell extends Hand
 	 */
 	Freecell(int x, int y)
 	{
-		super(x, y, Card.WIDTH, Card.HEIGHT);
+		super(x, y, CardView.WIDTH, CardView.HEIGHT);
 	}
 
 	/**
@@ -34,7 +34,7 @@ public class Freecell extends Hand
 	public boolean canPlace(Movable item)
 	{
 
-		if ((item instanceof Card) && (this.hand.size() == 0))
+		if ((item instanceof CardView) && (this.hand.size() == 0))
 		{
 
 			return true;
@@ -53,7 +53,7 @@ public class Freecell extends Hand
 	 */
 	public void place(Movable item)
 	{
-		Card card = (Card) item;
+		CardView card = (CardView) item;
 		this.add(card);
 
 	}
@@ -83,11 +83,11 @@ public class Freecell extends Hand
 	 * 
 	 * @param point
 	 *            the point that is on the card
-	 * @return the Card that has been removed
+	 * @return the CardView that has been removed
 	 */
 	public Movable pickUp(Point point)
 	{
-		Card card = this.getTopCard();
+		CardView card = this.getTopCard();
 		this.remove(0);
 		return card;
 	}
@@ -0,0 +1,307 @@
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * A file of finished games that only grows. The games are stored one after
+ * another in the layout of GameRecord, after a 4 byte tag, and a second file
+ * (the archive name with ".idx" added) holds the 8 byte offset of every game.
+ * A game is only counted once its offset is written, so a game that was cut
+ * off while being added is ignored
+ * 
+ * The games are read through memory mapped windows of the files, so reading
+ * millions of games does not load them onto the heap. Adding games is thread
+ * safe, but an archive should only be read by one thread: open the archive
+ * once for each thread that reads it
+ * 
+ * @author Michelle Pokrass
+ * 
+ */
+public class GameArchive implements Closeable
+{
+	// The tag at the start of an archive, "FCA1"
+	static final int MAGIC = 0x46434131;
+
+	// The most of a file mapped at once
+	private static final int WINDOW_SIZE = 1 << 26;
+
+	private final RandomAccessFile dataFile;
+
+	private final RandomAccessFile indexFile;
+
+	private final Window data;
+
+	private final Window index;
+
+	// The amount of games when the index was last measured, so most reads do
+	// not have to ask for the size of the file
+	private long knownSize;
+
+	/**
+	 * Opens an archive, creating it if it does not exist
+	 * 
+	 * @param file
+	 *            the File of the games
+	 * @throws IOException
+	 *             if the archive could not be opened or is not an archive
+	 */
+	public GameArchive(File file) throws IOException
+	{
+		dataFile = new RandomAccessFile(file, "rw");
+		indexFile = new RandomAccessFile(file.getPath() + ".idx", "rw");
+		data = new Window(dataFile.getChannel());
+		index = new Window(indexFile.getChannel());
+
+		// Tag a new archive, and check the tag of an old one
+		FileChannel channel = dataFile.getChannel();
+		if (channel.size() == 0)
+		{
+			ByteBuffer tag = ByteBuffer.allocate(4);
+			tag.putInt(MAGIC).flip();
+			channel.write(tag, 0);
+		}
+		else if (channel.size() < 4 || data.map(0, 4).getInt() != MAGIC)
+		{
+			close();
+			throw new IOException(file + " is not a game archive");
+		}
+	}
+
+	/**
+	 * Adds a game to the end of the archive
+	 * 
+	 * @param dealNumber
+	 *            the long number of the deal
+	 * @param moves
+	 *            the int array of encoded moves
+	 * @param count
+	 *            the integer amount of moves
+	 * @return the long index of the game in the archive
+	 * @throws IOException
+	 *             if the game could not be written
+	 */
+	public synchronized long append(long dealNumber, int[] moves, int count)
+			throws IOException
+	{
+		ByteBuffer record = ByteBuffer.allocate(GameRecord.recordBytes(count));
+		GameRecord.write(record, dealNumber, moves, count);
+		record.flip();
+		FileChannel channel = dataFile.getChannel();
+		long offset = channel.size();
+		while (record.hasRemaining())
+			channel.write(record, offset + record.position());
+
+		// Only count the game once all of it has been written
+		ByteBuffer entry = ByteBuffer.allocate(8);
+		entry.putLong(offset).flip();
+		FileChannel indexChannel = indexFile.getChannel();
+		long games = indexChannel.size() / 8;
+		while (entry.hasRemaining())
+			indexChannel.write(entry, games * 8 + entry.position());
+		return games;
+	}
+
+	/**
+	 * Returns the amount of games in the archive
+	 * 
+	 * @return the long amount of games
+	 * @throws IOException
+	 *             if the archive could not be read
+	 */
+	public long size() throws IOException
+	{
+		return indexFile.getChannel().size() / 8;
+	}
+
+	/**
+	 * Returns the deal number of a game
+	 * 
+	 * @param game
+	 *            the long index of the game
+	 * @return the long deal number
+	 * @throws IOException
+	 *             if the archive could not be read
+	 */
+	public long getDealNumber(long game) throws IOException
+	{
+		return data.map(offsetOf(game), 8).getLong();
+	}
+
+	/**
+	 * Returns the amount of moves in a game
+	 * 
+	 * @param game
+	 *            the long index of the game
+	 * @return the integer amount of moves
+	 * @throws IOException
+	 *             if the archive could not be read
+	 */
+	public int getMoveCount(long game) throws IOException
+	{
+		return countAt(offsetOf(game));
+	}
+
+	/**
+	 * Reads the moves of a game into an array, without creating any objects
+	 * 
+	 * @param game
+	 *            the long index of the game
+	 * @param moves
+	 *            the int array for the moves, at least as long as the amount
+	 *            of moves
+	 * @return the integer amount of moves read
+	 * @throws IOException
+	 *             if the archive could not be read
+	 */
+	public int readMoves(long game, int[] moves) throws IOException
+	{
+		long offset = offsetOf(game);
+		int count = countAt(offset);
+		ByteBuffer buffer = data.map(offset + 12, 2 * count);
+		for (int move = 0; move < count; move++)
+			moves[move] = buffer.getShort() & 0xFFFF;
+		return count;
+	}
+
+	/**
+	 * Reads a whole game
+	 * 
+	 * @param game
+	 *            the long index of the game
+	 * @return the GameRecord of the game
+	 * @throws IOException
+	 *             if the archive could not be read
+	 */
+	public GameRecord get(long game) throws IOException
+	{
+		int[] moves = new int[getMoveCount(game)];
+		readMoves(game, moves);
+		return new GameRecord(getDealNumber(game), moves);
+	}
+
+	/**
+	 * Closes the files of the archive
+	 * 
+	 * @throws IOException
+	 *             if a file could not be closed
+	 */
+	public void close() throws IOException
+	{
+		try
+		{
+			dataFile.close();
+		}
+		finally
+		{
+			indexFile.close();
+		}
+	}
+
+	/**
+	 * Reads the amount of moves of the game at an offset, checking that the
+	 * moves are all in the file
+	 * 
+	 * @param offset
+	 *            the long offset of the game
+	 * @return the integer amount of moves
+	 * @throws IOException
+	 *             if the archive could not be read or the amount is corrupt
+	 */
+	private int countAt(long offset) throws IOException
+	{
+		int count = data.map(offset + 8, 4).getInt();
+		if (count < 0
+				|| offset + 12 + 2L * count > dataFile.getChannel().size())
+			throw new IOException("The game at " + offset
+					+ " is corrupt or cut short: " + count + " moves");
+		return count;
+	}
+
+	/**
+	 * Returns where a game starts in the archive
+	 * 
+	 * @param game
+	 *            the long index of the game
+	 * @return the long offset of the game
+	 * @throws IOException
+	 *             if the archive could not be read
+	 */
+	private long offsetOf(long game) throws IOException
+	{
+		if (game >= knownSize)
+			knownSize = size();
+		if (game < 0 || game >= knownSize)
+			throw new IndexOutOfBoundsException("No game " + game + " in "
+					+ knownSize + " games");
+		return index.map(game * 8, 8).getLong();
+	}
+
+	/**
+	 * A part of a file mapped into memory, mapped again when a position
+	 * outside of it is read
+	 * 
+	 * @author Michelle Pokrass
+	 * 
+	 */
+	private static class Window
+	{
+		private final FileChannel channel;
+
+		private MappedByteBuffer buffer;
+
+		private long start;
+
+		/**
+		 * Creates a new window on a file, with nothing mapped yet
+		 * 
+		 * @param channel
+		 *            the FileChannel of the file
+		 */
+		Window(FileChannel channel)
+		{
+			this.channel = channel;
+		}
+
+		/**
+		 * Returns the mapped buffer, positioned at a part of the file
+		 * 
+		 * @param position
+		 *            the long position in the file
+		 * @param length
+		 *            the integer amount of bytes that will be read
+		 * @return the ByteBuffer, ready to read from the position
+		 * @throws IOException
+		 *             if the file could not be mapped, or the bytes are not
+		 *             all in the file
+		 */
+		ByteBuffer map(long position, int length) throws IOException
+		{
+			if (buffer == null || position < start
+					|| position + length > start + buffer.capacity())
+			{
+				// Mapping past the end of a file that is open for writing
+				// would make the file longer, so a record that points past
+				// the end is corrupt or was cut short
+				long fileSize = channel.size();
+				if (position < 0 || length < 0
+						|| position + length > fileSize)
+					throw new IOException("Bytes " + position + " to "
+							+ (position + length) + " are not in the "
+							+ fileSize + " byte file");
+				// The file only grows, so map as much as fits from the
+				// position
+				long size = Math.max(length, Math.min(WINDOW_SIZE, fileSize
+						- position));
+				buffer = channel.map(FileChannel.MapMode.READ_ONLY, position,
+						size);
+				start = position;
+			}
+			buffer.position((int) (position - start));
+			return buffer;
+		}
+	}
+}
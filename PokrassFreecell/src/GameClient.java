@@ -0,0 +1,301 @@
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.Random;
+
+/**
+ * A simple client of a GameServer, which sends one request at a time and
+ * waits for its reply. Bots can use it to play, and its main method stands in
+ * for many clients at once to try out a server
+ * 
+ * Usage: java GameClient [sessions] [moves] [host port]
+ * 
+ * Without a host, a server is started in the same program on a free port.
+ * Every session plays random legal moves, and at the end the position of
+ * every session on the server is checked against the one the client kept
+ * 
+ * @author Michelle Pokrass
+ * 
+ */
+public class GameClient implements Closeable
+{
+	private final SocketChannel channel;
+
+	private final ByteBuffer request = ByteBuffer
+			.allocate(GameProtocol.MAX_REQUEST);
+
+	private final ByteBuffer reply = ByteBuffer
+			.allocate(GameProtocol.MAX_REPLY);
+
+	/**
+	 * Connects to a server, starting a new session
+	 * 
+	 * @param address
+	 *            the InetSocketAddress of the server
+	 * @throws IOException
+	 *             if the server could not be reached
+	 */
+	public GameClient(InetSocketAddress address) throws IOException
+	{
+		channel = SocketChannel.open(address);
+		channel.socket().setTcpNoDelay(true);
+	}
+
+	/**
+	 * Starts a numbered deal
+	 * 
+	 * @param dealNumber
+	 *            the long number of the deal
+	 * @param state
+	 *            the GameState to fill with the position dealt
+	 * @throws IOException
+	 *             if the server could not be reached
+	 */
+	public void newGame(long dealNumber, GameState state) throws IOException
+	{
+		request.clear();
+		request.put(GameProtocol.NEW).putLong(dealNumber);
+		send();
+		receiveState(state);
+	}
+
+	/**
+	 * Makes a move in the game of the session
+	 * 
+	 * @param move
+	 *            the integer code of the move, as recorded by the table
+	 * @return the byte reply: GameProtocol.OK, WON or ILLEGAL
+	 * @throws IOException
+	 *             if the server could not be reached
+	 */
+	public byte move(int move) throws IOException
+	{
+		request.clear();
+		request.put(GameProtocol.MOVE).putShort((short) move);
+		send();
+		reply.clear();
+		receive(1);
+		return reply.get(0);
+	}
+
+	/**
+	 * Asks for the position of the game of the session
+	 * 
+	 * @param state
+	 *            the GameState to fill with the position
+	 * @throws IOException
+	 *             if the server could not be reached
+	 */
+	public void getState(GameState state) throws IOException
+	{
+		request.clear();
+		request.put(GameProtocol.STATE);
+		send();
+		receiveState(state);
+	}
+
+	/**
+	 * Ends the session
+	 * 
+	 * @throws IOException
+	 *             if the connection could not be closed
+	 */
+	public void close() throws IOException
+	{
+		channel.close();
+	}
+
+	/**
+	 * Sends the request in the request buffer
+	 * 
+	 * @throws IOException
+	 *             if the server could not be reached
+	 */
+	private void send() throws IOException
+	{
+		request.flip();
+		while (request.hasRemaining())
+			channel.write(request);
+	}
+
+	/**
+	 * Reads a STATE reply
+	 * 
+	 * @param state
+	 *            the GameState to fill with the position
+	 * @throws IOException
+	 *             if the server could not be reached or did not send a
+	 *             position
+	 */
+	private void receiveState(GameState state) throws IOException
+	{
+		reply.clear();
+		receive(1);
+		if (reply.get(0) != GameProtocol.STATE)
+			throw new IOException("Expected a position, got " + reply.get(0));
+		// Each cascade starts with its size, so read one at a time
+		for (int cascade = 0; cascade < GameState.CASCADES; cascade++)
+		{
+			receive(1);
+			receive(reply.get(reply.position() - 1));
+		}
+		receive(GameState.FREECELLS + GameState.FOUNDATIONS);
+		reply.flip();
+		reply.get();
+		GameProtocol.readState(reply, state);
+	}
+
+	/**
+	 * Reads bytes onto the end of the reply buffer
+	 * 
+	 * @param count
+	 *            the integer amount of bytes to read
+	 * @throws IOException
+	 *             if the server could not be reached or closed the session
+	 */
+	private void receive(int count) throws IOException
+	{
+		if (count < 0 || count > reply.remaining())
+			throw new IOException("Bad reply from the server");
+		int end = reply.position() + count;
+		reply.limit(end);
+		while (reply.position() < end)
+		{
+			if (channel.read(reply) < 0)
+				throw new EOFException("The server closed the session");
+		}
+		reply.limit(reply.capacity());
+	}
+
+	/**
+	 * Checks if two positions are the same, slot by slot
+	 * 
+	 * @param first
+	 *            the first GameState
+	 * @param second
+	 *            the second GameState
+	 * @return true if every slot holds the same cards, false otherwise
+	 */
+	private static boolean samePosition(GameState first, GameState second)
+	{
+		ByteBuffer firstBytes = ByteBuffer.allocate(GameProtocol.MAX_REPLY);
+		ByteBuffer secondBytes = ByteBuffer.allocate(GameProtocol.MAX_REPLY);
+		GameProtocol.writeState(first, firstBytes);
+		GameProtocol.writeState(second, secondBytes);
+		firstBytes.flip();
+		secondBytes.flip();
+		return firstBytes.equals(secondBytes);
+	}
+
+	/**
+	 * Plays random games on many sessions at once
+	 * 
+	 * @param args
+	 *            optionally the amount of sessions, the moves each session
+	 *            makes, and the host and port of the server
+	 */
+	public static void main(String[] args) throws IOException
+	{
+		int sessionCount = 1000;
+		if (args.length > 0)
+			sessionCount = Integer.parseInt(args[0]);
+		int moveCount = 100;
+		if (args.length > 1)
+			moveCount = Integer.parseInt(args[1]);
+
+		// Connect to the server given, or start one here
+		GameServer server = null;
+		InetSocketAddress address;
+		if (args.length > 3)
+			address = new InetSocketAddress(args[2], Integer.parseInt(args[3]));
+		else
+		{
+			server = new GameServer(new InetSocketAddress("localhost", 0),
+					Runtime.getRuntime().availableProcessors());
+			server.start();
+			address = new InetSocketAddress("localhost", server.getPort());
+		}
+
+		GameClient[] clients = new GameClient[sessionCount];
+		GameState[] states = new GameState[sessionCount];
+		Random random = new Random(1);
+		int[] moves = new int[GameState.MAX_MOVES];
+		long games = 0;
+		long played = 0;
+		int errors = 0;
+		long startTime = System.nanoTime();
+		try
+		{
+			for (int session = 0; session < sessionCount; session++)
+			{
+				clients[session] = new GameClient(address);
+				states[session] = new GameState();
+				clients[session].newGame(session + 1, states[session]);
+				games++;
+			}
+
+			// Every session makes one move in turn, starting a new game when
+			// it is stuck or has won
+			for (int turn = 0; turn < moveCount; turn++)
+			{
+				for (int session = 0; session < sessionCount; session++)
+				{
+					GameState state = states[session];
+					int count = state.generateMoves(moves);
+					if (count == 0)
+					{
+						clients[session].newGame(1 + random
+								.nextInt(TablePanel.MAX_DEAL), state);
+						games++;
+						continue;
+					}
+					int move = moves[random.nextInt(count)];
+					byte result = clients[session].move(move);
+					played++;
+					if (result == GameProtocol.ILLEGAL)
+					{
+						errors++;
+						continue;
+					}
+					state.apply(move);
+					if (result == GameProtocol.WON)
+					{
+						clients[session].newGame(1 + random
+								.nextInt(TablePanel.MAX_DEAL), state);
+						games++;
+					}
+				}
+			}
+
+			// Check that the server kept the same positions
+			GameState served = new GameState();
+			for (int session = 0; session < sessionCount; session++)
+			{
+				clients[session].getState(served);
+				if (!samePosition(served, states[session]))
+					errors++;
+			}
+		}
+		finally
+		{
+			for (GameClient client : clients)
+			{
+				if (client != null)
+					client.close();
+			}
+			if (server != null)
+				server.close();
+		}
+		long elapsed = System.nanoTime() - startTime;
+		System.out.println(String.format(
+				"%d sessions played %d games and %d moves in %d ms "
+						+ "(%.0f moves/s), %d errors", sessionCount, games,
+				played, elapsed / 1000000, played * 1e9 / Math.max(1, elapsed),
+				errors));
+		if (errors > 0)
+			System.exit(1);
+	}
+}
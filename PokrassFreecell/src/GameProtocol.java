@@ -0,0 +1,124 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * The binary messages between a GameServer and its clients. A request is one
+ * byte saying what it is, followed by a fixed amount of bytes, so no lengths
+ * are sent:
+ * 
+ * NEW (9 bytes) - the 8 byte number of a deal to start; the reply is the
+ * position. MOVE (3 bytes) - a move in the 2 bytes used by GameRecord; the
+ * reply is one byte, OK, WON or ILLEGAL. STATE (1 byte) - the reply is the
+ * position
+ * 
+ * A position is sent as the STATE byte, then for each cascade its amount of
+ * cards and its cards from the bottom up, then the 4 freecells (0 if empty),
+ * then the rank on the foundation of each suit. Cards use the byte codes of
+ * GameState. Moves to a foundation follow the table: an ace may go to any
+ * empty foundation, and the rest of its suit must follow it there
+ * 
+ * @author Michelle Pokrass
+ * 
+ */
+public class GameProtocol
+{
+	// The kinds of request
+	public static final byte NEW = 1;
+
+	public static final byte MOVE = 2;
+
+	public static final byte STATE = 3;
+
+	// The replies to a move
+	public static final byte OK = 0;
+
+	public static final byte ILLEGAL = 1;
+
+	public static final byte WON = 2;
+
+	// The longest request and the longest reply
+	public static final int MAX_REQUEST = 9;
+
+	public static final int MAX_REPLY = 1 + GameState.CASCADES + 52
+			+ GameState.FREECELLS + GameState.FOUNDATIONS;
+
+	/**
+	 * Returns the size of a request
+	 * 
+	 * @param kind
+	 *            the byte that starts the request
+	 * @return the integer amount of bytes in the request
+	 * @throws IOException
+	 *             if the byte does not start a request
+	 */
+	public static int requestSize(byte kind) throws IOException
+	{
+		switch (kind)
+		{
+		case NEW:
+			return 9;
+		case MOVE:
+			return 3;
+		case STATE:
+			return 1;
+		default:
+			throw new IOException("Unknown request " + kind);
+		}
+	}
+
+	/**
+	 * Writes a position as a STATE reply
+	 * 
+	 * @param state
+	 *            the GameState to write
+	 * @param buffer
+	 *            the ByteBuffer to write to, with room for MAX_REPLY bytes
+	 */
+	public static void writeState(GameState state, ByteBuffer buffer)
+	{
+		buffer.put(STATE);
+		for (int cascade = 0; cascade < GameState.CASCADES; cascade++)
+		{
+			int size = state.cascadeSize(cascade);
+			buffer.put((byte) size);
+			for (int index = 0; index < size; index++)
+				buffer.put(state.cascadeCard(cascade, index));
+		}
+		for (int freecell = 0; freecell < GameState.FREECELLS; freecell++)
+			buffer.put(state.freecell(freecell));
+		for (int suit = 1; suit <= GameState.FOUNDATIONS; suit++)
+			buffer.put((byte) state.foundationRank(suit));
+	}
+
+	/**
+	 * Reads a position written by writeState, after its STATE byte
+	 * 
+	 * @param buffer
+	 *            the ByteBuffer to read from
+	 * @param state
+	 *            the GameState to fill (it is cleared first)
+	 * @throws IOException
+	 *             if the position is not complete
+	 */
+	public static void readState(ByteBuffer buffer, GameState state)
+			throws IOException
+	{
+		state.clear();
+		for (int cascade = 0; cascade < GameState.CASCADES; cascade++)
+		{
+			int size = buffer.get();
+			if (size < 0 || size > GameState.CASCADE_CAPACITY)
+				throw new IOException("Bad cascade size " + size);
+			for (int index = 0; index < size; index++)
+				state.addToCascade(cascade, buffer.get());
+		}
+		for (int freecell = 0; freecell < GameState.FREECELLS; freecell++)
+		{
+			byte card = buffer.get();
+			if (card != 0)
+				state.setFreecell(freecell, card);
+		}
+		for (int suit = 1; suit <= GameState.FOUNDATIONS; suit++)
+			state.setFoundation(suit, buffer.get());
+	}
+}
@@ -0,0 +1,149 @@
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+
+/**
+ * A saved game: the number of its deal and every move made since the deal.
+ * A record is stored as the deal number (8 bytes), the amount of moves (4
+ * bytes) and then each move in 2 bytes, since an encoded move only uses its
+ * lowest 16 bits. A saved game file is the same with a 4 byte tag in front
+ * 
+ * @author Michelle Pokrass
+ * 
+ */
+public class GameRecord
+{
+	// The tag at the start of a saved game file, "FCG1"
+	static final int MAGIC = 0x46434731;
+
+	private final long dealNumber;
+
+	private final int[] moves;
+
+	/**
+	 * Creates a new record of a game
+	 * 
+	 * @param dealNumber
+	 *            the long number of the deal
+	 * @param moves
+	 *            the int array of encoded moves, in the order they were made
+	 */
+	public GameRecord(long dealNumber, int[] moves)
+	{
+		this.dealNumber = dealNumber;
+		this.moves = moves;
+	}
+
+	/**
+	 * Returns the number of the deal
+	 * 
+	 * @return the long deal number
+	 */
+	public long getDealNumber()
+	{
+		return dealNumber;
+	}
+
+	/**
+	 * Returns the moves of the game
+	 * 
+	 * @return the int array of encoded moves
+	 */
+	public int[] getMoves()
+	{
+		return moves;
+	}
+
+	/**
+	 * Writes this game to a file
+	 * 
+	 * @param file
+	 *            the File to write
+	 * @throws IOException
+	 *             if the file could not be written
+	 */
+	public void save(File file) throws IOException
+	{
+		ByteBuffer buffer = ByteBuffer.allocate(4 + recordBytes(moves.length));
+		buffer.putInt(MAGIC);
+		write(buffer, dealNumber, moves, moves.length);
+		OutputStream output = new FileOutputStream(file);
+		try
+		{
+			output.write(buffer.array());
+		}
+		finally
+		{
+			output.close();
+		}
+	}
+
+	/**
+	 * Reads a game from a file written by save
+	 * 
+	 * @param file
+	 *            the File to read
+	 * @return the GameRecord in the file
+	 * @throws IOException
+	 *             if the file could not be read or is not a saved game
+	 */
+	public static GameRecord load(File file) throws IOException
+	{
+		ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(file.toPath()));
+		try
+		{
+			if (buffer.getInt() != MAGIC)
+				throw new IOException(file + " is not a saved game");
+			long dealNumber = buffer.getLong();
+			int count = buffer.getInt();
+			// Counted in longs, so a huge count cannot overflow past the check
+			if (count < 0 || 2L * count > buffer.remaining())
+				throw new IOException(file + " is not a complete saved game");
+			int[] moves = new int[count];
+			for (int index = 0; index < count; index++)
+				moves[index] = buffer.getShort() & 0xFFFF;
+			return new GameRecord(dealNumber, moves);
+		}
+		catch (BufferUnderflowException e)
+		{
+			throw new IOException(file + " is not a complete saved game");
+		}
+	}
+
+	/**
+	 * Returns the size of a stored game
+	 * 
+	 * @param moveCount
+	 *            the integer amount of moves in the game
+	 * @return the integer amount of bytes
+	 */
+	static int recordBytes(int moveCount)
+	{
+		return 8 + 4 + 2 * moveCount;
+	}
+
+	/**
+	 * Writes a game at the position of a buffer
+	 * 
+	 * @param buffer
+	 *            the ByteBuffer to write to, with room for the game
+	 * @param dealNumber
+	 *            the long number of the deal
+	 * @param moves
+	 *            the int array of encoded moves
+	 * @param count
+	 *            the integer amount of moves to write
+	 */
+	static void write(ByteBuffer buffer, long dealNumber, int[] moves,
+			int count)
+	{
+		buffer.putLong(dealNumber);
+		buffer.putInt(count);
+		for (int index = 0; index < count; index++)
+			buffer.putShort((short) moves[index]);
+	}
+}
@@ -0,0 +1,78 @@
+import java.util.Arrays;
+
+/**
+ * Plays the recorded moves of a game on a GameState, checking that every move
+ * follows the rules. The table puts an ace on any empty foundation, while a
+ * GameState keeps each suit on its own foundation, so the replay remembers
+ * which suit each foundation of the table holds. A replay can be reused for
+ * many games and does not create any objects while playing
+ * 
+ * @author Michelle Pokrass
+ * 
+ */
+public class GameReplay
+{
+	private final GameState state = new GameState();
+
+	// The suit on each foundation of the table, or 0 if it is empty
+	private final int[] foundationSuits = new int[GameState.FOUNDATIONS];
+
+	/**
+	 * Starts a numbered deal
+	 * 
+	 * @param dealNumber
+	 *            the long number of the deal
+	 */
+	public void start(long dealNumber)
+	{
+		Deals.deal(dealNumber, state);
+		Arrays.fill(foundationSuits, 0);
+	}
+
+	/**
+	 * Plays the next move of the game, if it is legal
+	 * 
+	 * @param move
+	 *            the integer move recorded by the table
+	 * @return true if the move was legal and has been made, false otherwise
+	 */
+	public boolean play(int move)
+	{
+		int source = GameState.moveSource(move);
+		int destination = GameState.moveDestination(move);
+		if (source >= GameState.SLOTS || destination >= GameState.SLOTS)
+			return false;
+
+		// Find the foundation of the suit that the table's foundation holds
+		if (destination >= GameState.FIRST_FOUNDATION)
+		{
+			byte card = state.topCard(source);
+			if (card == 0)
+				return false;
+			int foundation = destination - GameState.FIRST_FOUNDATION;
+			int suit = foundationSuits[foundation];
+			if (suit == 0 ? GameState.rank(card) != 1
+					: suit != GameState.suit(card))
+				return false;
+			move = GameState.move(source, GameState.FIRST_FOUNDATION
+					+ GameState.suit(card) - 1, GameState.moveCount(move));
+			if (!state.isLegal(move))
+				return false;
+			foundationSuits[foundation] = GameState.suit(card);
+		}
+		else if (!state.isLegal(move))
+			return false;
+		state.apply(move);
+		return true;
+	}
+
+	/**
+	 * Returns the position reached so far
+	 * 
+	 * @return the GameState of the replay
+	 */
+	public GameState getState()
+	{
+		return state;
+	}
+}
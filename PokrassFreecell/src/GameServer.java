@@ -0,0 +1,418 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Plays many games at once for clients on the network, without a table on
+ * screen. Every connection is one session with its own game, and speaks the
+ * messages of GameProtocol. The moves are checked by a GameReplay, which
+ * follows the same rules as Cascade, Foundation and Freecell
+ * 
+ * The server runs one event loop thread for each processor. Each loop waits
+ * on a selector for any of its sessions to be ready, so no thread ever waits
+ * on a single client, and new connections are shared out between the loops in
+ * turn. A session only holds its game and two small buffers. When a client
+ * sends requests faster than it reads the replies, its requests are left
+ * unread until the replies have been sent
+ * 
+ * Usage: java GameServer [port] [loops]
+ * 
+ * @author Michelle Pokrass
+ * 
+ */
+public class GameServer implements Closeable
+{
+	// The port used if none is given
+	public static final int DEFAULT_PORT = 7070;
+
+	// The room for the replies of one session
+	private static final int OUTPUT_SIZE = 4 * GameProtocol.MAX_REPLY;
+
+	private final ServerSocketChannel server;
+
+	private final EventLoop[] loops;
+
+	// The loop given the next connection
+	private int nextLoop;
+
+	private final AtomicInteger sessions = new AtomicInteger();
+
+	/**
+	 * Creates a new server listening on an address. It does not accept
+	 * connections until it is started
+	 * 
+	 * @param address
+	 *            the InetSocketAddress to listen on (port 0 picks a free port)
+	 * @param loopCount
+	 *            the integer amount of event loop threads
+	 * @throws IOException
+	 *             if the address could not be used
+	 */
+	public GameServer(InetSocketAddress address, int loopCount)
+			throws IOException
+	{
+		server = ServerSocketChannel.open();
+		server.configureBlocking(false);
+		server.socket().setReuseAddress(true);
+		server.socket().bind(address, 1024);
+		loops = new EventLoop[loopCount];
+		for (int index = 0; index < loopCount; index++)
+			loops[index] = new EventLoop(index);
+		// The first loop also accepts the new connections
+		server.register(loops[0].selector, SelectionKey.OP_ACCEPT);
+	}
+
+	/**
+	 * Starts the event loops
+	 */
+	public void start()
+	{
+		for (EventLoop loop : loops)
+			loop.thread.start();
+	}
+
+	/**
+	 * Returns the port the server listens on
+	 * 
+	 * @return the integer port
+	 */
+	public int getPort()
+	{
+		return server.socket().getLocalPort();
+	}
+
+	/**
+	 * Returns the amount of connected sessions
+	 * 
+	 * @return the integer amount of sessions
+	 */
+	public int getSessionCount()
+	{
+		return sessions.get();
+	}
+
+	/**
+	 * Stops the event loops and closes every session
+	 * 
+	 * @throws IOException
+	 *             if the server could not be closed
+	 */
+	public void close() throws IOException
+	{
+		server.close();
+		for (EventLoop loop : loops)
+			loop.stop();
+	}
+
+	/**
+	 * Accepts the waiting connections, giving each to the next loop
+	 */
+	private void accept()
+	{
+		try
+		{
+			SocketChannel channel;
+			while ((channel = server.accept()) != null)
+			{
+				channel.configureBlocking(false);
+				channel.socket().setTcpNoDelay(true);
+				sessions.incrementAndGet();
+				loops[nextLoop].add(channel);
+				nextLoop = (nextLoop + 1) % loops.length;
+			}
+		}
+		catch (IOException e)
+		{
+			// Keep serving the sessions already connected
+			System.err.println("Could not accept a connection: "
+					+ e.getMessage());
+		}
+	}
+
+	/**
+	 * One game played for a client
+	 * 
+	 * @author Michelle Pokrass
+	 * 
+	 */
+	private static class Session
+	{
+		private final GameReplay replay = new GameReplay();
+
+		private final ByteBuffer input = ByteBuffer
+				.allocate(GameProtocol.MAX_REQUEST);
+
+		private final ByteBuffer output = ByteBuffer.allocate(OUTPUT_SIZE);
+
+		/**
+		 * Answers the complete requests that have been read, while there is
+		 * room for their replies
+		 * 
+		 * @return true if a request was left waiting for room, false if every
+		 *         complete request was answered
+		 * @throws IOException
+		 *             if the client sent something that is not a request
+		 */
+		boolean process() throws IOException
+		{
+			input.flip();
+			try
+			{
+				while (input.hasRemaining())
+				{
+					byte kind = input.get(input.position());
+					if (input.remaining() < GameProtocol.requestSize(kind))
+						return false;
+					if (output.remaining() < GameProtocol.MAX_REPLY)
+						return true;
+					input.get();
+					if (kind == GameProtocol.NEW)
+					{
+						replay.start(input.getLong());
+						GameProtocol.writeState(replay.getState(), output);
+					}
+					else if (kind == GameProtocol.MOVE)
+					{
+						int move = input.getShort() & 0xFFFF;
+						if (!replay.play(move))
+							output.put(GameProtocol.ILLEGAL);
+						else if (replay.getState().isSolved())
+							output.put(GameProtocol.WON);
+						else
+							output.put(GameProtocol.OK);
+					}
+					else
+						GameProtocol.writeState(replay.getState(), output);
+				}
+				return false;
+			}
+			finally
+			{
+				input.compact();
+			}
+		}
+	}
+
+	/**
+	 * A thread that serves the sessions registered with its selector
+	 * 
+	 * @author Michelle Pokrass
+	 * 
+	 */
+	private class EventLoop implements Runnable
+	{
+		private final Selector selector;
+
+		private final Thread thread;
+
+		// The connections handed over by the accepting loop
+		private final Queue<SocketChannel> added = new ConcurrentLinkedQueue<SocketChannel>();
+
+		private volatile boolean running = true;
+
+		/**
+		 * Creates a new loop
+		 * 
+		 * @param number
+		 *            the integer number of the loop, used in its thread name
+		 * @throws IOException
+		 *             if the selector could not be opened
+		 */
+		EventLoop(int number) throws IOException
+		{
+			selector = Selector.open();
+			thread = new Thread(this, "Game server " + number);
+		}
+
+		/**
+		 * Hands a new connection to this loop
+		 * 
+		 * @param channel
+		 *            the SocketChannel of the connection
+		 */
+		void add(SocketChannel channel)
+		{
+			added.add(channel);
+			selector.wakeup();
+		}
+
+		/**
+		 * Stops the loop and closes its sessions
+		 */
+		void stop()
+		{
+			running = false;
+			selector.wakeup();
+			try
+			{
+				thread.join();
+			}
+			catch (InterruptedException e)
+			{
+				Thread.currentThread().interrupt();
+			}
+		}
+
+		/**
+		 * Waits for sessions to be ready and serves them, until stopped
+		 */
+		public void run()
+		{
+			try
+			{
+				while (running)
+				{
+					selector.select();
+					SocketChannel channel;
+					while ((channel = added.poll()) != null)
+						channel.register(selector, SelectionKey.OP_READ,
+								new Session());
+
+					Iterator<SelectionKey> ready = selector.selectedKeys()
+							.iterator();
+					while (ready.hasNext())
+					{
+						SelectionKey key = ready.next();
+						ready.remove();
+						if (!key.isValid())
+							continue;
+						if (key.isAcceptable())
+							accept();
+						else
+							serve(key);
+					}
+				}
+			}
+			catch (IOException e)
+			{
+				System.err.println(thread.getName() + " stopped: "
+						+ e.getMessage());
+			}
+			catch (ClosedSelectorException e)
+			{
+				// Closed while stopping
+			}
+			finally
+			{
+				for (SelectionKey key : selector.keys())
+				{
+					if (key.attachment() instanceof Session)
+						end(key);
+				}
+				SocketChannel channel;
+				while ((channel = added.poll()) != null)
+					close(channel);
+				try
+				{
+					selector.close();
+				}
+				catch (IOException e)
+				{
+					// Nothing more can be done while stopping
+				}
+			}
+		}
+
+		/**
+		 * Reads the requests of a session that is ready, and writes as many
+		 * replies as the connection takes
+		 * 
+		 * @param key
+		 *            the SelectionKey of the session
+		 */
+		private void serve(SelectionKey key)
+		{
+			Session session = (Session) key.attachment();
+			SocketChannel channel = (SocketChannel) key.channel();
+			try
+			{
+				if (key.isReadable() && channel.read(session.input) < 0)
+				{
+					end(key);
+					return;
+				}
+				// Keep answering while the replies are all sent, since
+				// requests may be waiting for room
+				boolean waiting;
+				do
+				{
+					waiting = session.process();
+					session.output.flip();
+					channel.write(session.output);
+					session.output.compact();
+				}
+				while (waiting && session.output.position() == 0);
+
+				// Only read more once the replies have gone out
+				key.interestOps(session.output.position() > 0 ? SelectionKey.OP_WRITE
+						: SelectionKey.OP_READ);
+			}
+			catch (IOException e)
+			{
+				end(key);
+			}
+		}
+
+		/**
+		 * Closes a session
+		 * 
+		 * @param key
+		 *            the SelectionKey of the session
+		 */
+		private void end(SelectionKey key)
+		{
+			key.cancel();
+			if (key.channel().isOpen())
+				close((SocketChannel) key.channel());
+		}
+
+		/**
+		 * Closes the connection of a session
+		 * 
+		 * @param channel
+		 *            the SocketChannel of the session
+		 */
+		private void close(SocketChannel channel)
+		{
+			try
+			{
+				channel.close();
+			}
+			catch (IOException e)
+			{
+				// The session is over either way
+			}
+			sessions.decrementAndGet();
+		}
+	}
+
+	/**
+	 * Runs a server until the program is stopped
+	 * 
+	 * @param args
+	 *            optionally the port, and the amount of event loops
+	 */
+	public static void main(String[] args) throws IOException
+	{
+		int port = DEFAULT_PORT;
+		if (args.length > 0)
+			port = Integer.parseInt(args[0]);
+		int loops = Runtime.getRuntime().availableProcessors();
+		if (args.length > 1)
+			loops = Integer.parseInt(args[1]);
+		GameServer server = new GameServer(new InetSocketAddress(port), loops);
+		server.start();
+		System.out.println("Serving games on port " + server.getPort()
+				+ " with " + loops + " event loops");
+	}
+}
@@ -0,0 +1,1013 @@
+import java.util.Arrays;
+
+/**
+ * A headless game state that keeps the cascades, freecells and foundations of
+ * a game in primitive byte arrays, one byte per card. Generates, applies and
+ * undoes moves without creating any objects, so positions can be evaluated
+ * quickly without a display
+ * 
+ * A card is stored as a byte with the rank in the low four bits and the suit
+ * (D - 0, C - 1, H - 2, S - 3) in the next two bits, so 0 means "no card". A
+ * move is stored as an int holding the source slot, the destination slot and
+ * the amount of cards moved. Slots 0 - 7 are the cascades, 8 - 11 the
+ * freecells and 12 - 15 the foundations (one foundation per suit)
+ * 
+ * @author Michelle Pokrass
+ * 
+ */
+public class GameState
+{
+	public static final int CASCADES = 8;
+
+	public static final int FREECELLS = 4;
+
+	public static final int FOUNDATIONS = 4;
+
+	public static final int FIRST_FREECELL = CASCADES;
+
+	public static final int FIRST_FOUNDATION = FIRST_FREECELL + FREECELLS;
+
+	public static final int SLOTS = FIRST_FOUNDATION + FOUNDATIONS;
+
+	// The most moves that can be generated from one position
+	public static final int MAX_MOVES = 256;
+
+	// The length of the canonical form: every card plus an end marker for
+	// each cascade, the freecells and the foundations
+	public static final int CANONICAL_SIZE = 52 + CASCADES + FREECELLS
+			+ FOUNDATIONS;
+
+	// A cascade can hold at most 7 dealt cards plus a run from a queen down
+	// to an ace
+	static final int CASCADE_CAPACITY = 20;
+
+	// Create the arrays for the cards in every cascade, every freecell, and
+	// the rank of the top card of each foundation (indexed by suit)
+	private final byte[] cascades = new byte[CASCADES * CASCADE_CAPACITY];
+
+	private final int[] cascadeSizes = new int[CASCADES];
+
+	// For every card in a cascade, the length of the run (alternating colour,
+	// decreasing rank) that ends at it, set when the card is pushed so the
+	// run on top of a cascade never has to be counted
+	private final byte[] runs = new byte[CASCADES * CASCADE_CAPACITY];
+
+	private final byte[] freecells = new byte[FREECELLS];
+
+	private final byte[] foundations = new byte[FOUNDATIONS];
+
+	// The Zobrist hash: the XOR of one random key for every card in every
+	// position it occupies
+	private long hash;
+
+	// Create the random keys for a card at each position of each cascade,
+	// in each freecell and in its foundation. A fixed seed keeps hashes the
+	// same between runs
+	private static final long[] CASCADE_KEYS = randomKeys(CASCADES
+			* CASCADE_CAPACITY * 64, 1);
+
+	private static final long[] FREECELL_KEYS = randomKeys(FREECELLS * 64, 2);
+
+	private static final long[] FOUNDATION_KEYS = randomKeys(64, 3);
+
+	// The hash of the canonical form: a hash of each cascade that does not
+	// depend on which cascade it is, mixed and summed so the order of the
+	// cascades does not matter, combined with the freecell cards whatever
+	// freecell they are in and the foundations
+	private final long[] cascadeHashes = new long[CASCADES];
+
+	private long cascadeSum;
+
+	private long freecellHash;
+
+	private long foundationHash;
+
+	private static final long[] DEPTH_KEYS = randomKeys(CASCADE_CAPACITY * 64,
+			4);
+
+	private static final long[] FREECELL_CARD_KEYS = randomKeys(64, 5);
+
+	// The order of the cascades and freecells in the canonical form
+	private final int[] cascadeOrder = new int[CASCADES];
+
+	private final byte[] sortedFreecells = new byte[FREECELLS];
+
+	/**
+	 * Creates a new empty game state with no cards in any slot
+	 */
+	public GameState()
+	{
+	}
+
+	/**
+	 * Creates a copy of another game state
+	 * 
+	 * @param other
+	 *            the GameState to copy
+	 */
+	public GameState(GameState other)
+	{
+		copyFrom(other);
+	}
+
+	/**
+	 * Returns the byte code of a card
+	 * 
+	 * @param rank
+	 *            the integer rank of the card (A - 1, J Q K - 11 12 13)
+	 * @param suit
+	 *            the integer suit of the card (D - 1, C - 2, H - 3, S - 4)
+	 * @return the card as a byte
+	 */
+	public static byte card(int rank, int suit)
+	{
+		return (byte) (rank | ((suit - 1) << 4));
+	}
+
+	/**
+	 * Returns the rank of a card
+	 * 
+	 * @param card
+	 *            the byte code of the card
+	 * @return the integer rank of the card
+	 */
+	public static int rank(byte card)
+	{
+		return card & 0x0F;
+	}
+
+	/**
+	 * Returns the suit of a card
+	 * 
+	 * @param card
+	 *            the byte code of the card
+	 * @return the integer suit of the card (D - 1, C - 2, H - 3, S - 4)
+	 */
+	public static int suit(byte card)
+	{
+		return (card >> 4) + 1;
+	}
+
+	/**
+	 * Returns the colour of a card
+	 * 
+	 * @param card
+	 *            the byte code of the card
+	 * @return 0 for a red card (D, H), 1 for a black card (C, S)
+	 */
+	public static int colour(byte card)
+	{
+		return (card >> 4) & 1;
+	}
+
+	/**
+	 * Returns the card in String form
+	 * 
+	 * @param card
+	 *            the byte code of the card
+	 * @return the string representation of the card in "RANKSUIT" form, for
+	 *         example "4D"
+	 */
+	public static String cardToString(byte card)
+	{
+		return "" + "XA23456789TJQK".charAt(rank(card))
+				+ "YDCHS".charAt(suit(card));
+	}
+
+	/**
+	 * Encodes a move as an int
+	 * 
+	 * @param source
+	 *            the integer slot the cards move from
+	 * @param destination
+	 *            the integer slot the cards move to
+	 * @param count
+	 *            the integer amount of cards moved
+	 * @return the move as an int
+	 */
+	public static int move(int source, int destination, int count)
+	{
+		return source | (destination << 4) | (count << 8);
+	}
+
+	/**
+	 * Returns the slot a move takes its cards from
+	 * 
+	 * @param move
+	 *            the int code of the move
+	 * @return the integer source slot
+	 */
+	public static int moveSource(int move)
+	{
+		return move & 0x0F;
+	}
+
+	/**
+	 * Returns the slot a move puts its cards on
+	 * 
+	 * @param move
+	 *            the int code of the move
+	 * @return the integer destination slot
+	 */
+	public static int moveDestination(int move)
+	{
+		return (move >> 4) & 0x0F;
+	}
+
+	/**
+	 * Returns the amount of cards a move takes
+	 * 
+	 * @param move
+	 *            the int code of the move
+	 * @return the integer amount of cards moved
+	 */
+	public static int moveCount(int move)
+	{
+		return move >>> 8;
+	}
+
+	/**
+	 * Returns a move in String form
+	 * 
+	 * @param move
+	 *            the int code of the move
+	 * @return the string representation of the move, for example "3 -> 9 (1)"
+	 */
+	public static String moveToString(int move)
+	{
+		return String.format("%d -> %d (%d)", moveSource(move),
+				moveDestination(move), moveCount(move));
+	}
+
+	/**
+	 * Makes this state a copy of another state
+	 * 
+	 * @param other
+	 *            the GameState to copy
+	 */
+	public void copyFrom(GameState other)
+	{
+		System.arraycopy(other.cascades, 0, cascades, 0, cascades.length);
+		System.arraycopy(other.cascadeSizes, 0, cascadeSizes, 0,
+				cascadeSizes.length);
+		System.arraycopy(other.runs, 0, runs, 0, runs.length);
+		System.arraycopy(other.freecells, 0, freecells, 0, freecells.length);
+		System.arraycopy(other.foundations, 0, foundations, 0,
+				foundations.length);
+		hash = other.hash;
+		System.arraycopy(other.cascadeHashes, 0, cascadeHashes, 0,
+				cascadeHashes.length);
+		cascadeSum = other.cascadeSum;
+		freecellHash = other.freecellHash;
+		foundationHash = other.foundationHash;
+	}
+
+	/**
+	 * Removes every card from every slot
+	 */
+	public void clear()
+	{
+		Arrays.fill(cascades, (byte) 0);
+		Arrays.fill(cascadeSizes, 0);
+		Arrays.fill(runs, (byte) 0);
+		Arrays.fill(freecells, (byte) 0);
+		Arrays.fill(foundations, (byte) 0);
+		hash = 0;
+		Arrays.fill(cascadeHashes, 0);
+		cascadeSum = 0;
+		freecellHash = 0;
+		foundationHash = 0;
+	}
+
+	/**
+	 * Adds a card to the top of a cascade, without checking the rules. Used
+	 * to deal and to copy a table into this state
+	 * 
+	 * @param cascade
+	 *            the integer index of the cascade (0 - 7)
+	 * @param card
+	 *            the byte code of the card
+	 */
+	public void addToCascade(int cascade, byte card)
+	{
+		push(cascade, card);
+	}
+
+	/**
+	 * Puts a card in an empty freecell, without checking the rules
+	 * 
+	 * @param freecell
+	 *            the integer index of the freecell (0 - 3)
+	 * @param card
+	 *            the byte code of the card
+	 */
+	public void setFreecell(int freecell, byte card)
+	{
+		push(FIRST_FREECELL + freecell, card);
+	}
+
+	/**
+	 * Fills the foundation of a suit up to a rank, without checking the rules
+	 * 
+	 * @param suit
+	 *            the integer suit of the foundation (D - 1, C - 2, H - 3, S -
+	 *            4)
+	 * @param rank
+	 *            the integer rank of the top card of the foundation
+	 */
+	public void setFoundation(int suit, int rank)
+	{
+		for (int next = foundations[suit - 1] + 1; next <= rank; next++)
+			push(FIRST_FOUNDATION + suit - 1, card(next, suit));
+	}
+
+	/**
+	 * Returns the amount of cards in a cascade
+	 * 
+	 * @param cascade
+	 *            the integer index of the cascade (0 - 7)
+	 * @return the integer amount of cards in the cascade
+	 */
+	public int cascadeSize(int cascade)
+	{
+		return cascadeSizes[cascade];
+	}
+
+	/**
+	 * Returns the card at an index of a cascade
+	 * 
+	 * @param cascade
+	 *            the integer index of the cascade (0 - 7)
+	 * @param index
+	 *            the integer index of the card, 0 being the bottom card
+	 * @return the byte code of the card
+	 */
+	public byte cascadeCard(int cascade, int index)
+	{
+		return cascades[cascade * CASCADE_CAPACITY + index];
+	}
+
+	/**
+	 * Returns the card in a freecell
+	 * 
+	 * @param freecell
+	 *            the integer index of the freecell (0 - 3)
+	 * @return the byte code of the card, or 0 if the freecell is empty
+	 */
+	public byte freecell(int freecell)
+	{
+		return freecells[freecell];
+	}
+
+	/**
+	 * Returns the rank of the top card of the foundation of a suit
+	 * 
+	 * @param suit
+	 *            the integer suit of the foundation (D - 1, C - 2, H - 3, S -
+	 *            4)
+	 * @return the integer rank of the top card, or 0 if it is empty
+	 */
+	public int foundationRank(int suit)
+	{
+		return foundations[suit - 1];
+	}
+
+	/**
+	 * Returns the top card of a slot
+	 * 
+	 * @param slot
+	 *            the integer slot (0 - 15)
+	 * @return the byte code of the top card, or 0 if the slot is empty
+	 */
+	public byte topCard(int slot)
+	{
+		if (slot < FIRST_FREECELL)
+		{
+			int size = cascadeSizes[slot];
+			if (size == 0)
+				return 0;
+			return cascades[slot * CASCADE_CAPACITY + size - 1];
+		}
+		else if (slot < FIRST_FOUNDATION)
+			return freecells[slot - FIRST_FREECELL];
+		else
+		{
+			int rank = foundations[slot - FIRST_FOUNDATION];
+			if (rank == 0)
+				return 0;
+			return card(rank, slot - FIRST_FOUNDATION + 1);
+		}
+	}
+
+	/**
+	 * Returns the amount of cards in the foundations
+	 * 
+	 * @return the integer amount of cards that have been moved home
+	 */
+	public int cardsHome()
+	{
+		return foundations[0] + foundations[1] + foundations[2]
+				+ foundations[3];
+	}
+
+	/**
+	 * Returns the amount of cards in the cascades and freecells
+	 * 
+	 * @return the integer amount of cards still on the table
+	 */
+	public int cardsOnTable()
+	{
+		int cards = 0;
+		for (int cascade = 0; cascade < CASCADES; cascade++)
+			cards += cascadeSizes[cascade];
+		for (int freecell = 0; freecell < FREECELLS; freecell++)
+		{
+			if (freecells[freecell] != 0)
+				cards++;
+		}
+		return cards;
+	}
+
+	/**
+	 * Checks if the game has been won
+	 * 
+	 * @return true if all 52 cards are in the foundations, false otherwise
+	 */
+	public boolean isSolved()
+	{
+		return cardsHome() == 52;
+	}
+
+	/**
+	 * Checks if a card can safely be moved to its foundation, meaning no card
+	 * on the table could still need to be placed on it
+	 * 
+	 * @param card
+	 *            the byte code of the card
+	 * @return true if the card is an ace, or both cards of the opposite
+	 *         colour with one rank less are in the foundations, false
+	 *         otherwise
+	 */
+	public boolean isSafeToFoundation(byte card)
+	{
+		int rank = rank(card);
+		if (rank == 1)
+			return true;
+		// The opposite colour suits are the other two suits with a different
+		// colour bit
+		int colour = colour(card);
+		for (int suit = 0; suit < FOUNDATIONS; suit++)
+		{
+			if ((suit & 1) != colour && foundations[suit] < rank - 1)
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Returns the Zobrist hash of the cards in every slot, used to recognise
+	 * positions that have been seen before. The hash is kept up to date as
+	 * cards are added and removed, so this takes constant time
+	 * 
+	 * @return the long hash of this state
+	 */
+	public long hash()
+	{
+		return hash;
+	}
+
+	/**
+	 * Returns the hash of the canonical form of this state, which is the
+	 * same for every state that only differs in the order of the cascades or
+	 * the freecells. Kept up to date as cards move, so this takes constant
+	 * time
+	 * 
+	 * @return the long hash of the canonical form
+	 */
+	public long canonicalHash()
+	{
+		return cascadeSum ^ freecellHash ^ foundationHash;
+	}
+
+	/**
+	 * Writes the canonical form of this state: the cascades sorted by their
+	 * bottom card, each followed by a 0, then the freecell cards sorted from
+	 * highest code to lowest, then the rank of each foundation. States that
+	 * only differ in the order of the cascades or the freecells have the same
+	 * canonical form
+	 * 
+	 * @param form
+	 *            the byte array to fill, at least CANONICAL_SIZE long
+	 */
+	public void canonicalForm(byte[] form)
+	{
+		// Sort the cascades by their bottom card with an insertion sort,
+		// putting the empty cascades last
+		for (int cascade = 0; cascade < CASCADES; cascade++)
+		{
+			int bottom = bottomCard(cascade);
+			int place = cascade - 1;
+			while (place >= 0 && bottomCard(cascadeOrder[place]) > bottom)
+			{
+				cascadeOrder[place + 1] = cascadeOrder[place];
+				place--;
+			}
+			cascadeOrder[place + 1] = cascade;
+		}
+		int length = 0;
+		for (int order = 0; order < CASCADES; order++)
+		{
+			int cascade = cascadeOrder[order];
+			System.arraycopy(cascades, cascade * CASCADE_CAPACITY, form,
+					length, cascadeSizes[cascade]);
+			length += cascadeSizes[cascade];
+			form[length++] = 0;
+		}
+
+		// Sort the freecells from highest to lowest, so the empty ones are
+		// last
+		for (int freecell = 0; freecell < FREECELLS; freecell++)
+		{
+			byte card = freecells[freecell];
+			int place = freecell - 1;
+			while (place >= 0 && sortedFreecells[place] < card)
+			{
+				sortedFreecells[place + 1] = sortedFreecells[place];
+				place--;
+			}
+			sortedFreecells[place + 1] = card;
+		}
+		System.arraycopy(sortedFreecells, 0, form, length, FREECELLS);
+		length += FREECELLS;
+		System.arraycopy(foundations, 0, form, length, FOUNDATIONS);
+		length += FOUNDATIONS;
+
+		// Clear the rest, which is only used when cards are home
+		while (length < CANONICAL_SIZE)
+			form[length++] = 0;
+	}
+
+	/**
+	 * Returns the amount of empty freecells
+	 * 
+	 * @return the integer amount of freecells with no card
+	 */
+	public int freeFreecells()
+	{
+		int free = 0;
+		for (int freecell = 0; freecell < FREECELLS; freecell++)
+		{
+			if (freecells[freecell] == 0)
+				free++;
+		}
+		return free;
+	}
+
+	/**
+	 * Returns the amount of empty cascades, not counting the destination
+	 * 
+	 * @param destination
+	 *            the integer slot cards are moving to
+	 * @return the integer amount of empty cascades other than the destination
+	 */
+	public int freeCascades(int destination)
+	{
+		int free = 0;
+		for (int cascade = 0; cascade < CASCADES; cascade++)
+		{
+			if (cascadeSizes[cascade] == 0 && cascade != destination)
+				free++;
+		}
+		return free;
+	}
+
+	/**
+	 * Returns the most cards that can be moved at once onto a destination
+	 * 
+	 * @param destination
+	 *            the integer slot cards are moving to
+	 * @return (1 + number of empty freecells) * 2 ^ (number of empty cascades
+	 *         other than the destination)
+	 */
+	public int maxMovable(int destination)
+	{
+		return (1 + freeFreecells()) << freeCascades(destination);
+	}
+
+	/**
+	 * Returns the length of the run of cards on top of a cascade that forms a
+	 * proper cascade (alternating colour, decreasing rank), in constant time
+	 * 
+	 * @param cascade
+	 *            the integer index of the cascade (0 - 7)
+	 * @return the integer amount of cards that could be lifted together
+	 */
+	public int movableRun(int cascade)
+	{
+		int size = cascadeSizes[cascade];
+		if (size == 0)
+			return 0;
+		return runs[cascade * CASCADE_CAPACITY + size - 1];
+	}
+
+	/**
+	 * Checks if a card can be placed on a slot
+	 * 
+	 * @param card
+	 *            the byte code of the card (the bottom card when moving
+	 *            several cards)
+	 * @param destination
+	 *            the integer slot the card moves to
+	 * @return true if the rules allow it, false otherwise
+	 */
+	public boolean canPlace(byte card, int destination)
+	{
+		if (destination < FIRST_FREECELL)
+		{
+			byte top = topCard(destination);
+			return top == 0 || fitsOnCascade(card, top);
+		}
+		else if (destination < FIRST_FOUNDATION)
+			return freecells[destination - FIRST_FREECELL] == 0;
+		else
+			return destination - FIRST_FOUNDATION == suit(card) - 1
+					&& foundations[suit(card) - 1] + 1 == rank(card);
+	}
+
+	/**
+	 * Checks if a move follows the rules in this state
+	 * 
+	 * @param move
+	 *            the int code of the move
+	 * @return true if the move can be applied, false otherwise
+	 */
+	public boolean isLegal(int move)
+	{
+		int source = moveSource(move);
+		int destination = moveDestination(move);
+		int count = moveCount(move);
+		// Cards can never be taken back from the foundations
+		if (source == destination || source >= FIRST_FOUNDATION || count < 1)
+			return false;
+		if (source >= FIRST_FREECELL)
+		{
+			if (count != 1 || freecells[source - FIRST_FREECELL] == 0)
+				return false;
+			return canPlace(freecells[source - FIRST_FREECELL], destination);
+		}
+		// Several cards can only move between cascades, if they form a
+		// proper cascade and there are enough free spaces
+		if (count > 1
+				&& (destination >= FIRST_FREECELL
+						|| count > movableRun(source) || count > maxMovable(destination)))
+			return false;
+		if (count > cascadeSizes[source])
+			return false;
+		byte bottom = cascades[source * CASCADE_CAPACITY + cascadeSizes[source]
+				- count];
+		return canPlace(bottom, destination);
+	}
+
+	/**
+	 * Applies a move, without checking the rules
+	 * 
+	 * @param move
+	 *            the int code of the move
+	 */
+	public void apply(int move)
+	{
+		transfer(moveSource(move), moveDestination(move), moveCount(move));
+	}
+
+	/**
+	 * Takes back a move that was the last one applied
+	 * 
+	 * @param move
+	 *            the int code of the move
+	 */
+	public void undo(int move)
+	{
+		transfer(moveDestination(move), moveSource(move), moveCount(move));
+	}
+
+	/**
+	 * Fills an array with every legal move in this state. Moves to the
+	 * foundations come first, then moves onto cascades, then moves to the
+	 * freecells. Only the first empty cascade and freecell are used as
+	 * destinations, since the others give the same positions
+	 * 
+	 * @param moves
+	 *            the int array to fill, at least MAX_MOVES long
+	 * @return the integer amount of moves generated
+	 */
+	public int generateMoves(int[] moves)
+	{
+		int count = 0;
+		int emptyCascade = -1;
+		int emptyFreecell = -1;
+		for (int cascade = CASCADES - 1; cascade >= 0; cascade--)
+		{
+			if (cascadeSizes[cascade] == 0)
+				emptyCascade = cascade;
+		}
+		for (int freecell = FREECELLS - 1; freecell >= 0; freecell--)
+		{
+			if (freecells[freecell] == 0)
+				emptyFreecell = FIRST_FREECELL + freecell;
+		}
+
+		// Moves to the foundations
+		for (int source = 0; source < FIRST_FOUNDATION; source++)
+		{
+			byte top = topCard(source);
+			if (top != 0 && foundations[suit(top) - 1] + 1 == rank(top))
+				moves[count++] = move(source, FIRST_FOUNDATION + suit(top) - 1,
+						1);
+		}
+
+		// Moves from the freecells to the cascades
+		for (int freecell = 0; freecell < FREECELLS; freecell++)
+		{
+			byte card = freecells[freecell];
+			if (card == 0)
+				continue;
+			for (int cascade = 0; cascade < CASCADES; cascade++)
+			{
+				if (cascadeSizes[cascade] == 0 ? cascade == emptyCascade
+						: fitsOnCascade(card, topCard(cascade)))
+					moves[count++] = move(FIRST_FREECELL + freecell, cascade, 1);
+			}
+		}
+
+		// Moves between the cascades
+		for (int source = 0; source < CASCADES; source++)
+		{
+			int size = cascadeSizes[source];
+			if (size == 0)
+				continue;
+			int run = movableRun(source);
+			int base = source * CASCADE_CAPACITY;
+			for (int cascade = 0; cascade < CASCADES; cascade++)
+			{
+				if (cascade == source)
+					continue;
+				if (cascadeSizes[cascade] == 0)
+				{
+					if (cascade != emptyCascade)
+						continue;
+					// Any part of the run can go to an empty cascade, except
+					// the whole cascade which would only swap places
+					int most = Math.min(run, maxMovable(cascade));
+					for (int amount = 1; amount <= most; amount++)
+					{
+						if (amount < size)
+							moves[count++] = move(source, cascade, amount);
+					}
+				}
+				else
+				{
+					// Only one length of the run can fit on the top card
+					int amount = rank(topCard(cascade)) - 1
+							- rank(cascades[base + size - 1]) + 1;
+					if (amount >= 1
+							&& amount <= run
+							&& fitsOnCascade(cascades[base + size - amount],
+									topCard(cascade))
+							&& amount <= maxMovable(cascade))
+						moves[count++] = move(source, cascade, amount);
+				}
+			}
+		}
+
+		// Moves from the cascades to a freecell
+		if (emptyFreecell >= 0)
+		{
+			for (int source = 0; source < CASCADES; source++)
+			{
+				if (cascadeSizes[source] > 0)
+					moves[count++] = move(source, emptyFreecell, 1);
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Creates a String representation of the state, one line per cascade,
+	 * then the freecells and foundations
+	 * 
+	 * @return the String representation of the state
+	 */
+	public String toString()
+	{
+		StringBuilder text = new StringBuilder();
+		for (int cascade = 0; cascade < CASCADES; cascade++)
+		{
+			for (int index = 0; index < cascadeSizes[cascade]; index++)
+			{
+				if (index > 0)
+					text.append(' ');
+				text.append(cardToString(cascadeCard(cascade, index)));
+			}
+			text.append('\n');
+		}
+		text.append("Freecells:");
+		for (int freecell = 0; freecell < FREECELLS; freecell++)
+		{
+			text.append(' ');
+			text.append(freecells[freecell] == 0 ? ".."
+					: cardToString(freecells[freecell]));
+		}
+		text.append("\nFoundations:");
+		for (int suit = 1; suit <= FOUNDATIONS; suit++)
+		{
+			text.append(' ');
+			text.append(foundations[suit - 1] == 0 ? ".."
+					: cardToString(card(foundations[suit - 1], suit)));
+		}
+		return text.toString();
+	}
+
+	/**
+	 * Checks if a card can be placed on another card in a cascade
+	 * 
+	 * @param card
+	 *            the byte code of the card being placed
+	 * @param top
+	 *            the byte code of the top card of the cascade
+	 * @return true if the card is a different colour and one rank less, false
+	 *         otherwise
+	 */
+	private static boolean fitsOnCascade(byte card, byte top)
+	{
+		return colour(card) != colour(top) && rank(card) + 1 == rank(top);
+	}
+
+	/**
+	 * Moves cards from the top of one slot to another, keeping their order
+	 * 
+	 * @param source
+	 *            the integer slot to take the cards from
+	 * @param destination
+	 *            the integer slot to put the cards on
+	 * @param count
+	 *            the integer amount of cards
+	 */
+	private void transfer(int source, int destination, int count)
+	{
+		if (count == 1)
+		{
+			push(destination, pop(source));
+			return;
+		}
+		// Several cards only ever move between cascades
+		int start = source * CASCADE_CAPACITY + cascadeSizes[source] - count;
+		for (int index = 0; index < count; index++)
+			push(destination, cascades[start + index]);
+		for (int index = 0; index < count; index++)
+			pop(source);
+	}
+
+	/**
+	 * Adds a card to the top of a slot
+	 * 
+	 * @param slot
+	 *            the integer slot
+	 * @param card
+	 *            the byte code of the card
+	 */
+	private void push(int slot, byte card)
+	{
+		if (slot < FIRST_FREECELL)
+		{
+			int index = slot * CASCADE_CAPACITY + cascadeSizes[slot]++;
+			cascades[index] = card;
+			// The card either continues the run below it or starts a new one
+			if (cascadeSizes[slot] > 1
+					&& fitsOnCascade(card, cascades[index - 1]))
+				runs[index] = (byte) (runs[index - 1] + 1);
+			else
+				runs[index] = 1;
+			hash ^= CASCADE_KEYS[(index << 6) | card];
+			updateCascadeHash(slot, cascadeSizes[slot] - 1, card);
+		}
+		else if (slot < FIRST_FOUNDATION)
+		{
+			freecells[slot - FIRST_FREECELL] = card;
+			hash ^= FREECELL_KEYS[((slot - FIRST_FREECELL) << 6) | card];
+			freecellHash ^= FREECELL_CARD_KEYS[card];
+		}
+		else
+		{
+			foundations[suit(card) - 1] = (byte) rank(card);
+			hash ^= FOUNDATION_KEYS[card];
+			foundationHash ^= FOUNDATION_KEYS[card];
+		}
+	}
+
+	/**
+	 * Removes the top card of a slot
+	 * 
+	 * @param slot
+	 *            the integer slot
+	 * @return the byte code of the card that was removed
+	 */
+	private byte pop(int slot)
+	{
+		byte card;
+		if (slot < FIRST_FREECELL)
+		{
+			int index = slot * CASCADE_CAPACITY + --cascadeSizes[slot];
+			card = cascades[index];
+			cascades[index] = 0;
+			hash ^= CASCADE_KEYS[(index << 6) | card];
+			updateCascadeHash(slot, cascadeSizes[slot], card);
+		}
+		else if (slot < FIRST_FOUNDATION)
+		{
+			card = freecells[slot - FIRST_FREECELL];
+			freecells[slot - FIRST_FREECELL] = 0;
+			hash ^= FREECELL_KEYS[((slot - FIRST_FREECELL) << 6) | card];
+			freecellHash ^= FREECELL_CARD_KEYS[card];
+		}
+		else
+		{
+			int suit = slot - FIRST_FOUNDATION + 1;
+			card = card(foundations[suit - 1], suit);
+			foundations[suit - 1]--;
+			hash ^= FOUNDATION_KEYS[card];
+			foundationHash ^= FOUNDATION_KEYS[card];
+		}
+		return card;
+	}
+
+	/**
+	 * Adds or removes a card in the hash of a cascade, and updates the sum of
+	 * the mixed cascade hashes
+	 * 
+	 * @param cascade
+	 *            the integer index of the cascade
+	 * @param index
+	 *            the integer index of the card within the cascade
+	 * @param card
+	 *            the byte code of the card
+	 */
+	private void updateCascadeHash(int cascade, int index, byte card)
+	{
+		cascadeSum -= mix(cascadeHashes[cascade]);
+		cascadeHashes[cascade] ^= DEPTH_KEYS[(index << 6) | card];
+		cascadeSum += mix(cascadeHashes[cascade]);
+	}
+
+	/**
+	 * Returns the bottom card of a cascade for sorting, with empty cascades
+	 * sorting last
+	 * 
+	 * @param cascade
+	 *            the integer index of the cascade
+	 * @return the integer code of the bottom card, or Integer.MAX_VALUE if
+	 *         the cascade is empty
+	 */
+	private int bottomCard(int cascade)
+	{
+		if (cascadeSizes[cascade] == 0)
+			return Integer.MAX_VALUE;
+		return cascades[cascade * CASCADE_CAPACITY];
+	}
+
+	/**
+	 * Scrambles a 64-bit value, so that sums of scrambled hashes do not
+	 * cancel out the way an XOR of two cascades would
+	 * 
+	 * @param value
+	 *            the long value
+	 * @return the long scrambled value, 0 if the value is 0
+	 */
+	private static long mix(long value)
+	{
+		value = (value ^ (value >>> 30)) * 0xbf58476d1ce4e5b9L;
+		value = (value ^ (value >>> 27)) * 0x94d049bb133111ebL;
+		return value ^ (value >>> 31);
+	}
+
+	/**
+	 * Creates an array of random 64-bit keys
+	 * 
+	 * @param size
+	 *            the integer amount of keys
+	 * @param seed
+	 *            the long seed of the random numbers
+	 * @return the long array of keys
+	 */
+	private static long[] randomKeys(int size, long seed)
+	{
+		// SplitMix64, which gives well mixed keys from consecutive seeds
+		long[] keys = new long[size];
+		long state = seed * 0x9e3779b97f4a7c15L;
+		for (int index = 0; index < size; index++)
+		{
+			state += 0x9e3779b97f4a7c15L;
+			keys[index] = mix(state);
+		}
+		return keys;
+	}
+}
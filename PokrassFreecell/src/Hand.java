@@ -2,6 +2,7 @@ import java.awt.Color;
 import java.awt.Graphics;
 import java.awt.Point;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Scanner;
 import java.util.Collections;
@@ -17,7 +18,7 @@ import java.util.StringTokenizer;
 public abstract class Hand extends Movable
 {
 	// Create a list of cards
-	protected ArrayList<Card> hand;
+	protected ArrayList<CardView> hand;
 
 	/**
 	 * Calls the other constructor with 0 as every parameter
@@ -45,7 +46,7 @@ public abstract class Hand extends Movable
 		// through
 		super(x, y, width, height);
 		// Create the actual list of cards
-		hand = new ArrayList<Card>();
+		hand = new ArrayList<CardView>();
 	}
 
 	/**
@@ -59,13 +60,13 @@ public abstract class Hand extends Movable
 		// Calls the other constructor with 0 as every parameter
 		this(0, 0, 0, 0);
 		// Create the actual list of cards
-		hand = new ArrayList<Card>();
+		hand = new ArrayList<CardView>();
 		// Create a new string tokenizer, and create a card and add it for every
 		// token
 		StringTokenizer st = new StringTokenizer(str, " ");
 		while (st.hasMoreTokens())
 		{
-			hand.add(new Card(st.nextToken()));
+			hand.add(new CardView(Card.valueOf(st.nextToken())));
 		}
 
 	}
@@ -74,9 +75,9 @@ public abstract class Hand extends Movable
 	 * Sets the location of the card and adds it to this hand
 	 * 
 	 * @param card
-	 *            the Card to add
+	 *            the CardView to add
 	 */
-	public void add(Card card)
+	public void add(CardView card)
 	{
 		card.setLocation(x, y);
 		hand.add(card);
@@ -96,10 +97,10 @@ public abstract class Hand extends Movable
 	 * Removes a card from the hand
 	 * 
 	 * @param card
-	 *            the Card to remove
+	 *            the CardView to remove
 	 * @return true if the hand contained the card, false if not
 	 */
-	public boolean remove(Card card)
+	public boolean remove(CardView card)
 	{
 		return hand.remove(card);
 	}
@@ -107,9 +108,9 @@ public abstract class Hand extends Movable
 	/**
 	 * Returns the top card of the hand
 	 * 
-	 * @return the last Card in the hand, or null if there are no cards
+	 * @return the last CardView in the hand, or null if there are no cards
 	 */
-	public Card getTopCard()
+	public CardView getTopCard()
 	{
 		if (hand.size() == 0)
 			return null;
@@ -119,9 +120,9 @@ public abstract class Hand extends Movable
 	/**
 	 * Returns the bottom card of the hand
 	 * 
-	 * @return the first Card of the hand or null if it is empty
+	 * @return the first CardView of the hand or null if it is empty
 	 */
-	public Card getBottomCard()
+	public CardView getBottomCard()
 	{
 		if (hand.size() == 0)
 			return null;
@@ -133,9 +134,9 @@ public abstract class Hand extends Movable
 	 * 
 	 * @param index
 	 *            the integer index to remove
-	 * @return the Card that has been removed
+	 * @return the CardView that has been removed
 	 */
-	public Card remove(int index)
+	public CardView remove(int index)
 	{
 		return hand.remove(index);
 	}
@@ -175,12 +176,30 @@ public abstract class Hand extends Movable
 	 * Overrides the draw method, draws every card within the hand
 	 */
 	public void draw(Graphics g)
+	{
+		draw(g, Collections.<CardView> emptyList());
+	}
+
+	/**
+	 * Draws every card within the hand except some
+	 * 
+	 * @param g
+	 *            Graphics to draw the hand in
+	 * @param hidden
+	 *            the Collection of Cards not to draw (because they are being
+	 *            drawn somewhere else)
+	 */
+	public void draw(Graphics g, Collection<CardView> hidden)
 	{
 		// Draws a black rectangle around the first card
 		g.setColor(Color.BLACK);
-		g.draw3DRect(x + 1, y + 1, Card.WIDTH - 2, Card.HEIGHT - 2, true);
-		for (Card next : hand)
-			next.draw(g);
+		g.draw3DRect(x + 1, y + 1, CardView.WIDTH - 2, CardView.HEIGHT - 2,
+				true);
+		for (CardView next : hand)
+		{
+			if (hidden.isEmpty() || !hidden.contains(next))
+				next.draw(g);
+		}
 
 	}
 
@@ -192,7 +211,7 @@ public abstract class Hand extends Movable
 		super.move(initialPos, finalPos);
 
 		// Move each card in the hand together with the actual hand
-		for (Card card : hand)
+		for (CardView card : hand)
 		{
 			card.move(initialPos, finalPos);
 		}
@@ -203,9 +222,9 @@ public abstract class Hand extends Movable
 	 * 
 	 * @param index
 	 *            the integer index of the card
-	 * @return the Card at the given index
+	 * @return the CardView at the given index
 	 */
-	public Card getCard(int index)
+	public CardView getCard(int index)
 	{
 		return hand.get(index);
 	}
@@ -0,0 +1,18 @@
+/**
+ * Estimates how many moves a position is from being solved, so the solver can
+ * try the most promising moves first and cut off hopeless ones
+ * 
+ * @author Michelle Pokrass
+ * 
+ */
+public interface Heuristic
+{
+	/**
+	 * Estimates the distance of a position from being solved
+	 * 
+	 * @param state
+	 *            the GameState to estimate (must not be changed)
+	 * @return the integer estimate, 0 if the position is solved
+	 */
+	int estimate(GameState state);
+}
@@ -0,0 +1,134 @@
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+import javax.swing.SwingUtilities;
+
+/**
+ * Finds the next move to suggest by solving a copy of the table on a
+ * background thread, so the table keeps responding while it searches. The
+ * search is given a few seconds, and is interrupted when a new hint is asked
+ * for or the hint is cancelled because the table changed. The answer is
+ * handed back on the Event Dispatch Thread, and only if it is still wanted
+ * 
+ * The methods of an engine are called on the Event Dispatch Thread
+ * 
+ * @author Michelle Pokrass
+ * 
+ */
+public class HintEngine
+{
+	// The value given to the listener when no move was found
+	public static final int NO_HINT = -1;
+
+	// The longest a hint may take, in milliseconds
+	private static final long TIME_LIMIT = 3000;
+
+	/**
+	 * Receives the move found for a hint
+	 * 
+	 * @author Michelle Pokrass
+	 * 
+	 */
+	public interface Listener
+	{
+		/**
+		 * Called on the Event Dispatch Thread when the search is over
+		 * 
+		 * @param move
+		 *            the integer code of the GameState move to make, or
+		 *            NO_HINT if no solution was found in time
+		 */
+		void hintFound(int move);
+	}
+
+	// One daemon thread runs the searches, so an unfinished search never
+	// keeps the program open
+	private final ExecutorService searcher = Executors
+			.newSingleThreadExecutor(new ThreadFactory() {
+				public Thread newThread(Runnable task)
+				{
+					Thread thread = new Thread(task, "Hint search");
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+
+	// The solver is only used by the search thread
+	private Solver solver;
+
+	private Future<?> search;
+
+	// Counts the hints asked for, so an old answer can be recognised
+	private int generation;
+
+	/**
+	 * Starts looking for a move from a position, cancelling any search that
+	 * is still running
+	 * 
+	 * @param position
+	 *            the GameState of the table (it is copied)
+	 * @param listener
+	 *            the Listener told about the move
+	 */
+	public void findHint(GameState position, final Listener listener)
+	{
+		cancel();
+		final int hintGeneration = generation;
+		final GameState snapshot = new GameState();
+		snapshot.copyFrom(position);
+		search = searcher.submit(new Runnable() {
+			public void run()
+			{
+				if (solver == null)
+				{
+					solver = new Solver();
+					solver.setTimeLimit(TIME_LIMIT);
+				}
+				SolveResult result = solver.solve(snapshot);
+				if (Thread.currentThread().isInterrupted())
+					return;
+				final int move = result.isSolved()
+						&& result.getMoves().length > 0 ? result.getMoves()[0]
+						: NO_HINT;
+				SwingUtilities.invokeLater(new Runnable() {
+					public void run()
+					{
+						// Skip the answer if the hint was cancelled while it
+						// was on its way
+						if (hintGeneration == generation)
+						{
+							search = null;
+							listener.hintFound(move);
+						}
+					}
+				});
+			}
+		});
+	}
+
+	/**
+	 * Stops the current search, if there is one. Its answer will not be given
+	 */
+	public void cancel()
+	{
+		generation++;
+		if (search != null)
+		{
+			search.cancel(true);
+			search = null;
+		}
+	}
+
+	/**
+	 * Checks if a search is running
+	 * 
+	 * @return true if a hint has been asked for and not found yet, false
+	 *         otherwise
+	 */
+	public boolean isSearching()
+	{
+		return search != null;
+	}
+}
@@ -0,0 +1,97 @@
+import java.awt.Point;
+import java.util.List;
+
+/**
+ * Finds the hand under a point on the table in constant time. The table is
+ * divided into a grid of small cells, and each cell remembers the hand whose
+ * area covers it. A cascade covers its column from its top down to the bottom
+ * of the table, since it can grow that far. The hands never move, so the grid
+ * is only built again when the size of the table changes
+ * 
+ * @author Michelle Pokrass
+ * 
+ */
+public class HitTestIndex
+{
+	// The width and height of a cell in pixels, smaller than the space
+	// between two hands so no cell is covered by two of them
+	private static final int CELL_SIZE = 4;
+
+	private final int width;
+
+	private final int height;
+
+	private final int columns;
+
+	private final Hand[] cells;
+
+	/**
+	 * Creates a new index of the hands on a table
+	 * 
+	 * @param hands
+	 *            the List of hands on the table
+	 * @param width
+	 *            the integer width of the table
+	 * @param height
+	 *            the integer height of the table
+	 */
+	public HitTestIndex(List<Hand> hands, int width, int height)
+	{
+		this.width = width;
+		this.height = height;
+		columns = (width + CELL_SIZE - 1) / CELL_SIZE;
+		int rows = (height + CELL_SIZE - 1) / CELL_SIZE;
+		cells = new Hand[columns * rows];
+
+		// Mark every cell covered by each hand
+		for (Hand next : hands)
+		{
+			int bottom = next instanceof Cascade ? height : next.y
+					+ next.height;
+			int firstColumn = Math.max(0, next.x / CELL_SIZE);
+			int lastColumn = Math.min(columns - 1, (next.x + next.width - 1)
+					/ CELL_SIZE);
+			int firstRow = Math.max(0, next.y / CELL_SIZE);
+			int lastRow = Math.min(rows - 1, (bottom - 1) / CELL_SIZE);
+			for (int row = firstRow; row <= lastRow; row++)
+				for (int column = firstColumn; column <= lastColumn; column++)
+					cells[row * columns + column] = next;
+		}
+	}
+
+	/**
+	 * Checks if this index was built for a table size
+	 * 
+	 * @param width
+	 *            the integer width of the table
+	 * @param height
+	 *            the integer height of the table
+	 * @return true if the index has the same size, false if it must be built
+	 *         again
+	 */
+	public boolean hasSize(int width, int height)
+	{
+		return this.width == width && this.height == height;
+	}
+
+	/**
+	 * Returns the hand containing a point
+	 * 
+	 * @param point
+	 *            the Point on the table
+	 * @return the Hand containing the point, or null if there is none
+	 */
+	public Hand handAt(Point point)
+	{
+		if (point.x < 0 || point.y < 0 || point.x >= width
+				|| point.y >= height)
+			return null;
+		// The cells on the edge of a hand are only partly covered by it, and
+		// a cascade may not reach down to the point yet
+		Hand hand = cells[(point.y / CELL_SIZE) * columns + point.x
+				/ CELL_SIZE];
+		if (hand != null && hand.contains(point))
+			return hand;
+		return null;
+	}
+}
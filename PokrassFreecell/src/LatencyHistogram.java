@@ -0,0 +1,128 @@
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counts how long something took, in buckets that grow with the time, so a
+ * percentile can be found without keeping every time. Times under 16
+ * nanoseconds have a bucket each, and every doubling above that is split into
+ * 8 buckets, so a percentile is within an eighth of the real time. Recording
+ * a time is thread safe and does not create any objects
+ * 
+ * @author Michelle Pokrass
+ * 
+ */
+public class LatencyHistogram
+{
+	// The buckets for each doubling of the time
+	private static final int SUB_BUCKETS = 8;
+
+	private static final int SUB_BITS = 3;
+
+	// Times below this have a bucket each
+	private static final int LINEAR = 16;
+
+	private static final int LINEAR_BITS = 4;
+
+	private final AtomicLongArray counts = new AtomicLongArray(LINEAR
+			+ (64 - LINEAR_BITS) * SUB_BUCKETS);
+
+	/**
+	 * Counts the time since a start, if the start was measured
+	 * 
+	 * @param start
+	 *            the long time from Metrics.start, or 0 to count nothing
+	 */
+	public void recordSince(long start)
+	{
+		if (start != 0)
+			record(System.nanoTime() - start);
+	}
+
+	/**
+	 * Counts a time
+	 * 
+	 * @param nanos
+	 *            the long amount of nanoseconds
+	 */
+	public void record(long nanos)
+	{
+		counts.incrementAndGet(bucket(Math.max(0, nanos)));
+	}
+
+	/**
+	 * Returns the amount of times counted
+	 * 
+	 * @return the long amount of times
+	 */
+	public long getCount()
+	{
+		long total = 0;
+		for (int index = 0; index < counts.length(); index++)
+			total += counts.get(index);
+		return total;
+	}
+
+	/**
+	 * Finds the time that a share of the times counted are no longer than
+	 * 
+	 * @param fraction
+	 *            the double share of the times, from 0 to 1 (0.99 for the
+	 *            99th percentile)
+	 * @return the long amount of nanoseconds, or 0 if nothing was counted
+	 */
+	public long percentile(double fraction)
+	{
+		long total = getCount();
+		if (total == 0)
+			return 0;
+		long wanted = Math.max(1, (long) Math.ceil(fraction * total));
+		long seen = 0;
+		for (int index = 0; index < counts.length(); index++)
+		{
+			seen += counts.get(index);
+			if (seen >= wanted)
+				return highest(index);
+		}
+		return highest(counts.length() - 1);
+	}
+
+	/**
+	 * Forgets every time counted
+	 */
+	public void reset()
+	{
+		for (int index = 0; index < counts.length(); index++)
+			counts.set(index, 0);
+	}
+
+	/**
+	 * Finds the bucket of a time
+	 * 
+	 * @param nanos
+	 *            the long amount of nanoseconds, not negative
+	 * @return the integer index of the bucket
+	 */
+	private static int bucket(long nanos)
+	{
+		if (nanos < LINEAR)
+			return (int) nanos;
+		int power = 63 - Long.numberOfLeadingZeros(nanos);
+		int sub = (int) (nanos >>> (power - SUB_BITS)) & (SUB_BUCKETS - 1);
+		return LINEAR + (power - LINEAR_BITS) * SUB_BUCKETS + sub;
+	}
+
+	/**
+	 * Finds the longest time that goes in a bucket
+	 * 
+	 * @param bucket
+	 *            the integer index of the bucket
+	 * @return the long amount of nanoseconds
+	 */
+	private static long highest(int bucket)
+	{
+		if (bucket < LINEAR)
+			return bucket;
+		int power = (bucket - LINEAR) / SUB_BUCKETS + LINEAR_BITS;
+		long sub = (bucket - LINEAR) % SUB_BUCKETS;
+		return ((SUB_BUCKETS + sub + 1) << (power - SUB_BITS)) - 1;
+	}
+}
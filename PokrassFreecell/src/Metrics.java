@@ -0,0 +1,261 @@
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * Measures the table while it is played: the moves made, how long painting,
+ * the autoplay scan and the mouse handlers take, and how deep the undo
+ * history is. The measurements are read over JMX under the name
+ * "Freecell:type=Metrics"
+ * 
+ * The measurements are off unless the program is started with
+ * -Dfreecell.metrics=true or they are turned on over JMX. When they are off,
+ * start returns 0 without reading the clock and nothing is counted, so the
+ * calls can stay in the table
+ * 
+ * @author Michelle Pokrass
+ * 
+ */
+public class Metrics implements MetricsMBean
+{
+	// The name the measurements are registered under
+	public static final String NAME = "Freecell:type=Metrics";
+
+	// The seconds the move rate is averaged over
+	private static final int RATE_SECONDS = 60;
+
+	private static volatile boolean enabled = Boolean
+			.getBoolean("freecell.metrics");
+
+	// Create the times that are measured
+	public static final LatencyHistogram PAINT = new LatencyHistogram();
+
+	public static final LatencyHistogram AUTOPLAY_SCAN = new LatencyHistogram();
+
+	public static final LatencyHistogram MOUSE = new LatencyHistogram();
+
+	private static final AtomicLong moves = new AtomicLong();
+
+	private static final AtomicLong undos = new AtomicLong();
+
+	private static volatile int undoDepth;
+
+	// The moves made in each of the last seconds, and the second each count
+	// is for
+	private static final long[] secondMoves = new long[RATE_SECONDS];
+
+	private static final long[] seconds = new long[RATE_SECONDS];
+
+	/**
+	 * Registers the measurements with the platform MBean server
+	 * 
+	 * @throws JMException
+	 *             if they could not be registered
+	 */
+	public static void register() throws JMException
+	{
+		ManagementFactory.getPlatformMBeanServer().registerMBean(
+				new Metrics(), new ObjectName(NAME));
+	}
+
+	/**
+	 * Reads the clock at the start of something that is timed
+	 * 
+	 * @return the long time in nanoseconds, or 0 if nothing is measured
+	 */
+	public static long start()
+	{
+		return enabled ? System.nanoTime() : 0;
+	}
+
+	/**
+	 * Counts a move made on the table
+	 * 
+	 * @param depth
+	 *            the integer amount of moves that can now be undone
+	 */
+	public static void moveMade(int depth)
+	{
+		if (!enabled)
+			return;
+		moves.incrementAndGet();
+		undoDepth = depth;
+		long second = System.nanoTime() / 1000000000L;
+		synchronized (seconds)
+		{
+			int slot = (int) (second % RATE_SECONDS);
+			if (seconds[slot] != second)
+			{
+				seconds[slot] = second;
+				secondMoves[slot] = 0;
+			}
+			secondMoves[slot]++;
+		}
+	}
+
+	/**
+	 * Counts a move undone
+	 * 
+	 * @param depth
+	 *            the integer amount of moves that can now be undone
+	 */
+	public static void moveUndone(int depth)
+	{
+		if (!enabled)
+			return;
+		undos.incrementAndGet();
+		undoDepth = depth;
+	}
+
+	/**
+	 * Notes how many moves can be undone, after a new game or a redo
+	 * 
+	 * @param depth
+	 *            the integer amount of moves
+	 */
+	public static void setUndoDepth(int depth)
+	{
+		if (enabled)
+			undoDepth = depth;
+	}
+
+	/**
+	 * Returns if the measurements are being taken
+	 * 
+	 * @return true if they are, false otherwise
+	 */
+	public boolean isEnabled()
+	{
+		return enabled;
+	}
+
+	/**
+	 * Starts or stops taking the measurements
+	 * 
+	 * @param enabled
+	 *            true to take them, false to stop
+	 */
+	public void setEnabled(boolean enabled)
+	{
+		Metrics.enabled = enabled;
+	}
+
+	/**
+	 * Returns the amount of moves made on the table
+	 * 
+	 * @return the long amount of moves
+	 */
+	public long getMoveCount()
+	{
+		return moves.get();
+	}
+
+	/**
+	 * Returns how many moves were made each second over the last minute
+	 * 
+	 * @return the double amount of moves per second
+	 */
+	public double getMovesPerSecond()
+	{
+		long now = System.nanoTime() / 1000000000L;
+		long total = 0;
+		synchronized (seconds)
+		{
+			for (int slot = 0; slot < RATE_SECONDS; slot++)
+			{
+				if (now - seconds[slot] < RATE_SECONDS)
+					total += secondMoves[slot];
+			}
+		}
+		return (double) total / RATE_SECONDS;
+	}
+
+	/**
+	 * Returns the median time to paint the table
+	 * 
+	 * @return the double amount of microseconds
+	 */
+	public double getPaintP50Micros()
+	{
+		return PAINT.percentile(0.5) / 1000.0;
+	}
+
+	/**
+	 * Returns the 99th percentile of the time to paint the table
+	 * 
+	 * @return the double amount of microseconds
+	 */
+	public double getPaintP99Micros()
+	{
+		return PAINT.percentile(0.99) / 1000.0;
+	}
+
+	/**
+	 * Returns the median time of the autoplay scan
+	 * 
+	 * @return the double amount of microseconds
+	 */
+	public double getAutoplayScanP50Micros()
+	{
+		return AUTOPLAY_SCAN.percentile(0.5) / 1000.0;
+	}
+
+	/**
+	 * Returns the 99th percentile of the time of the autoplay scan
+	 * 
+	 * @return the double amount of microseconds
+	 */
+	public double getAutoplayScanP99Micros()
+	{
+		return AUTOPLAY_SCAN.percentile(0.99) / 1000.0;
+	}
+
+	/**
+	 * Returns the 99th percentile of the time to handle a mouse event
+	 * 
+	 * @return the double amount of microseconds
+	 */
+	public double getMouseP99Micros()
+	{
+		return MOUSE.percentile(0.99) / 1000.0;
+	}
+
+	/**
+	 * Returns the amount of moves that can be undone in the current game
+	 * 
+	 * @return the integer amount of moves
+	 */
+	public int getUndoDepth()
+	{
+		return undoDepth;
+	}
+
+	/**
+	 * Returns the amount of moves undone
+	 * 
+	 * @return the long amount of moves
+	 */
+	public long getUndoCount()
+	{
+		return undos.get();
+	}
+
+	/**
+	 * Forgets every measurement taken so far
+	 */
+	public void reset()
+	{
+		PAINT.reset();
+		AUTOPLAY_SCAN.reset();
+		MOUSE.reset();
+		moves.set(0);
+		undos.set(0);
+		synchronized (seconds)
+		{
+			for (int slot = 0; slot < RATE_SECONDS; slot++)
+				secondMoves[slot] = 0;
+		}
+	}
+}
@@ -0,0 +1,93 @@
+/**
+ * The measurements of the table that can be read over JMX, for example with
+ * jconsole. Times are in microseconds
+ * 
+ * @author Michelle Pokrass
+ * 
+ */
+public interface MetricsMBean
+{
+	/**
+	 * Returns if the measurements are being taken
+	 * 
+	 * @return true if they are, false otherwise
+	 */
+	boolean isEnabled();
+
+	/**
+	 * Starts or stops taking the measurements
+	 * 
+	 * @param enabled
+	 *            true to take them, false to stop
+	 */
+	void setEnabled(boolean enabled);
+
+	/**
+	 * Returns the amount of moves made on the table
+	 * 
+	 * @return the long amount of moves
+	 */
+	long getMoveCount();
+
+	/**
+	 * Returns how many moves were made each second over the last minute
+	 * 
+	 * @return the double amount of moves per second
+	 */
+	double getMovesPerSecond();
+
+	/**
+	 * Returns the median time to paint the table
+	 * 
+	 * @return the double amount of microseconds
+	 */
+	double getPaintP50Micros();
+
+	/**
+	 * Returns the 99th percentile of the time to paint the table
+	 * 
+	 * @return the double amount of microseconds
+	 */
+	double getPaintP99Micros();
+
+	/**
+	 * Returns the median time to look for cards to move to the foundations
+	 * 
+	 * @return the double amount of microseconds
+	 */
+	double getAutoplayScanP50Micros();
+
+	/**
+	 * Returns the 99th percentile of the time to look for cards to move to
+	 * the foundations
+	 * 
+	 * @return the double amount of microseconds
+	 */
+	double getAutoplayScanP99Micros();
+
+	/**
+	 * Returns the 99th percentile of the time to handle a mouse event
+	 * 
+	 * @return the double amount of microseconds
+	 */
+	double getMouseP99Micros();
+
+	/**
+	 * Returns the amount of moves that can be undone in the current game
+	 * 
+	 * @return the integer amount of moves
+	 */
+	int getUndoDepth();
+
+	/**
+	 * Returns the amount of moves undone
+	 * 
+	 * @return the long amount of moves
+	 */
+	long getUndoCount();
+
+	/**
+	 * Forgets every measurement taken so far
+	 */
+	void reset();
+}
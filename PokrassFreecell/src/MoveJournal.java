@@ -0,0 +1,119 @@
+import java.util.Arrays;
+
+/**
+ * Keeps the moves of one game so they can be undone and redone as far back
+ * as the start of the game. Each move is an int encoded like a GameState move
+ * (source slot, destination slot and card count), with the hands of the table
+ * numbered in the order of the GameState slots. The moves are kept in one
+ * array that grows when it is full
+ * 
+ * @author Michelle Pokrass
+ * 
+ */
+public class MoveJournal
+{
+	private int[] moves = new int[64];
+
+	// The amount of moves made, and the amount that have been made at some
+	// point (the moves in between can be redone)
+	private int size;
+
+	private int end;
+
+	/**
+	 * Removes every move, for a new game
+	 */
+	public void clear()
+	{
+		size = 0;
+		end = 0;
+	}
+
+	/**
+	 * Adds a move that has just been made. The moves that had been undone
+	 * can no longer be redone
+	 * 
+	 * @param move
+	 *            the integer encoded move
+	 */
+	public void add(int move)
+	{
+		if (size == moves.length)
+			moves = Arrays.copyOf(moves, 2 * moves.length);
+		moves[size++] = move;
+		end = size;
+	}
+
+	/**
+	 * Checks if there is a move to undo
+	 * 
+	 * @return true if a move has been made, false otherwise
+	 */
+	public boolean canUndo()
+	{
+		return size > 0;
+	}
+
+	/**
+	 * Checks if there is a move to redo
+	 * 
+	 * @return true if a move has been undone since the last new move, false
+	 *         otherwise
+	 */
+	public boolean canRedo()
+	{
+		return size < end;
+	}
+
+	/**
+	 * Steps back one move
+	 * 
+	 * @return the integer encoded move to take back
+	 */
+	public int undo()
+	{
+		return moves[--size];
+	}
+
+	/**
+	 * Steps forward one move
+	 * 
+	 * @return the integer encoded move to make again
+	 */
+	public int redo()
+	{
+		return moves[size++];
+	}
+
+	/**
+	 * Returns the amount of moves made
+	 * 
+	 * @return the integer amount of moves
+	 */
+	public int size()
+	{
+		return size;
+	}
+
+	/**
+	 * Copies the moves made into a new array
+	 * 
+	 * @return the int array of encoded moves, in the order they were made
+	 */
+	public int[] toArray()
+	{
+		return Arrays.copyOf(moves, size);
+	}
+
+	/**
+	 * Returns one of the moves made
+	 * 
+	 * @param index
+	 *            the integer index of the move, 0 being the first
+	 * @return the integer encoded move
+	 */
+	public int get(int index)
+	{
+		return moves[index];
+	}
+}
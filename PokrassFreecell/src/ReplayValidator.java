@@ -0,0 +1,402 @@
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Checks every game in an archive by playing its moves again on a GameState,
+ * which follows the same rules as the table (Cascade.canPlace,
+ * Foundation.canPlace and enoughFreecells). Each game is reported as won,
+ * unfinished, illegal with the number of its first illegal move, or corrupt
+ * if its record cannot be read, in which case the other games are still
+ * checked
+ * 
+ * The archive is split into chunks of games that run on a work stealing
+ * fork/join pool. Every worker thread has its own view of the archive, its own
+ * replay and its own buffers, so the memory used does not grow with the size
+ * of the archive
+ * 
+ * Usage: java ReplayValidator archiveFile [reportFile] [threads]
+ * 
+ * @author Michelle Pokrass
+ * 
+ */
+public class ReplayValidator
+{
+	// The most games checked by one task
+	private static final int CHUNK_SIZE = 4096;
+
+	private final File archiveFile;
+
+	private final Writer report;
+
+	private IOException error;
+
+	// Create the counters of each outcome
+	private final AtomicLong won = new AtomicLong();
+
+	private final AtomicLong unfinished = new AtomicLong();
+
+	private final AtomicLong illegal = new AtomicLong();
+
+	private final AtomicLong corrupt = new AtomicLong();
+
+	// The workers of every thread, closed at the end
+	private final List<Worker> workers = new ArrayList<Worker>();
+
+	private final ThreadLocal<Worker> threadWorkers = new ThreadLocal<Worker>() {
+		protected Worker initialValue()
+		{
+			Worker worker = new Worker();
+			synchronized (workers)
+			{
+				workers.add(worker);
+			}
+			return worker;
+		}
+	};
+
+	/**
+	 * Creates a new validator
+	 * 
+	 * @param archiveFile
+	 *            the File of the archive to check
+	 * @param report
+	 *            the Writer the line of each game is written to, or null to
+	 *            only count the outcomes
+	 */
+	public ReplayValidator(File archiveFile, Writer report)
+	{
+		this.archiveFile = archiveFile;
+		this.report = report;
+	}
+
+	/**
+	 * Checks every game in the archive
+	 * 
+	 * @param threads
+	 *            the integer amount of worker threads
+	 * @return the long amount of games checked
+	 * @throws IOException
+	 *             if the archive could not be read or the report written
+	 */
+	public long validate(int threads) throws IOException
+	{
+		long games;
+		GameArchive archive = new GameArchive(archiveFile);
+		try
+		{
+			games = archive.size();
+		}
+		finally
+		{
+			archive.close();
+		}
+
+		if (report != null)
+			report.write("game\tdeal\tresult\tmoves\tillegalMove\n");
+		ForkJoinPool pool = new ForkJoinPool(threads);
+		try
+		{
+			if (games > 0)
+				pool.invoke(new GameRange(0, games - 1));
+		}
+		finally
+		{
+			pool.shutdown();
+			for (Worker worker : workers)
+				worker.close();
+		}
+		if (report != null)
+			report.flush();
+		if (error != null)
+			throw error;
+		return games;
+	}
+
+	/**
+	 * Returns the amount of games that were won
+	 * 
+	 * @return the long amount of games
+	 */
+	public long getWon()
+	{
+		return won.get();
+	}
+
+	/**
+	 * Returns the amount of games that were legal but not finished
+	 * 
+	 * @return the long amount of games
+	 */
+	public long getUnfinished()
+	{
+		return unfinished.get();
+	}
+
+	/**
+	 * Returns the amount of games with an illegal move
+	 * 
+	 * @return the long amount of games
+	 */
+	public long getIllegal()
+	{
+		return illegal.get();
+	}
+
+	/**
+	 * Returns the amount of games whose record could not be read
+	 * 
+	 * @return the long amount of games
+	 */
+	public long getCorrupt()
+	{
+		return corrupt.get();
+	}
+
+	/**
+	 * Keeps the first error of any thread
+	 * 
+	 * @param e
+	 *            the IOException that happened
+	 */
+	private synchronized void fail(IOException e)
+	{
+		if (error == null)
+			error = e;
+	}
+
+	/**
+	 * Writes the lines of a chunk of games to the report
+	 * 
+	 * @param lines
+	 *            the StringBuilder of lines
+	 */
+	private synchronized void write(StringBuilder lines)
+	{
+		if (error != null)
+			return;
+		try
+		{
+			report.append(lines);
+		}
+		catch (IOException e)
+		{
+			error = e;
+		}
+	}
+
+	/**
+	 * The archive view, replay and buffers of one worker thread
+	 * 
+	 * @author Michelle Pokrass
+	 * 
+	 */
+	private class Worker
+	{
+		private GameArchive archive;
+
+		private final GameReplay replay = new GameReplay();
+
+		private int[] moves = new int[256];
+
+		private final StringBuilder lines = new StringBuilder();
+
+		/**
+		 * Checks a range of games
+		 * 
+		 * @param first
+		 *            the long index of the first game
+		 * @param last
+		 *            the long index of the last game (included)
+		 */
+		void validate(long first, long last)
+		{
+			long chunkWon = 0;
+			long chunkUnfinished = 0;
+			long chunkIllegal = 0;
+			long chunkCorrupt = 0;
+			lines.setLength(0);
+			try
+			{
+				if (archive == null)
+					archive = new GameArchive(archiveFile);
+				for (long game = first; game <= last; game++)
+				{
+					// Read the game, making room for its moves if needed
+					int count;
+					long dealNumber;
+					try
+					{
+						count = archive.getMoveCount(game);
+						if (count > moves.length)
+							moves = new int[Math.max(count, 2 * moves.length)];
+						archive.readMoves(game, moves);
+						dealNumber = archive.getDealNumber(game);
+					}
+					catch (IOException e)
+					{
+						// Report a record that cannot be read and go on with
+						// the rest of the games
+						chunkCorrupt++;
+						if (report != null)
+							lines.append(game).append("\t\tcorrupt\t\t\n");
+						continue;
+					}
+
+					// Play the moves until one is illegal
+					replay.start(dealNumber);
+					int played = 0;
+					while (played < count && replay.play(moves[played]))
+						played++;
+
+					String result;
+					if (played < count)
+					{
+						result = "illegal";
+						chunkIllegal++;
+					}
+					else if (replay.getState().isSolved())
+					{
+						result = "won";
+						chunkWon++;
+					}
+					else
+					{
+						result = "unfinished";
+						chunkUnfinished++;
+					}
+					if (report != null)
+					{
+						lines.append(game).append('\t').append(dealNumber)
+								.append('\t').append(result).append('\t')
+								.append(count).append('\t');
+						if (played < count)
+							lines.append(played + 1);
+						lines.append('\n');
+					}
+				}
+			}
+			catch (IOException e)
+			{
+				fail(e);
+			}
+			won.addAndGet(chunkWon);
+			unfinished.addAndGet(chunkUnfinished);
+			illegal.addAndGet(chunkIllegal);
+			corrupt.addAndGet(chunkCorrupt);
+			if (report != null)
+				write(lines);
+		}
+
+		/**
+		 * Closes the view of the archive
+		 */
+		void close()
+		{
+			try
+			{
+				if (archive != null)
+					archive.close();
+			}
+			catch (IOException e)
+			{
+				fail(e);
+			}
+		}
+	}
+
+	/**
+	 * A task that checks a range of games, splitting it in half until it is
+	 * no bigger than a chunk
+	 * 
+	 * @author Michelle Pokrass
+	 * 
+	 */
+	@SuppressWarnings("serial")
+	private class GameRange extends RecursiveAction
+	{
+		private final long first;
+
+		private final long last;
+
+		/**
+		 * Creates a new task for a range of games
+		 * 
+		 * @param first
+		 *            the long index of the first game
+		 * @param last
+		 *            the long index of the last game (included)
+		 */
+		GameRange(long first, long last)
+		{
+			this.first = first;
+			this.last = last;
+		}
+
+		/**
+		 * Checks the games, or splits the range into two tasks
+		 */
+		protected void compute()
+		{
+			if (last - first < CHUNK_SIZE)
+			{
+				threadWorkers.get().validate(first, last);
+				return;
+			}
+			long middle = first + (last - first) / 2;
+			invokeAll(new GameRange(first, middle), new GameRange(middle + 1,
+					last));
+		}
+	}
+
+	/**
+	 * Checks the archive given on the command line
+	 * 
+	 * @param args
+	 *            the archive file, and optionally the report file and the
+	 *            amount of threads
+	 */
+	public static void main(String[] args) throws IOException
+	{
+		if (args.length < 1)
+		{
+			System.err.println("Usage: java ReplayValidator archiveFile "
+					+ "[reportFile] [threads]");
+			System.exit(1);
+		}
+		int threads = Runtime.getRuntime().availableProcessors();
+		if (args.length > 2)
+			threads = Integer.parseInt(args[2]);
+
+		Writer report = null;
+		if (args.length > 1)
+			report = new BufferedWriter(new FileWriter(args[1]));
+		ReplayValidator validator = new ReplayValidator(new File(args[0]),
+				report);
+		long startTime = System.nanoTime();
+		long games;
+		try
+		{
+			games = validator.validate(threads);
+		}
+		finally
+		{
+			if (report != null)
+				report.close();
+		}
+		long elapsed = System.nanoTime() - startTime;
+		System.out.println(String.format(
+				"Checked %d games in %d ms (%.0f games/s): %d won, "
+						+ "%d unfinished, %d illegal, %d corrupt", games,
+				elapsed / 1000000, games * 1e9 / Math.max(1, elapsed),
+				validator.getWon(), validator.getUnfinished(),
+				validator.getIllegal(), validator.getCorrupt()));
+	}
+}
@@ -0,0 +1,146 @@
+/**
+ * The result of a solver search: whether a solution was found, the moves of
+ * the solution, and how much work the search took
+ * 
+ * @author Michelle Pokrass
+ * 
+ */
+public class SolveResult
+{
+	/**
+	 * How a search ended
+	 */
+	public enum Status
+	{
+		// A solution was found
+		SOLVED,
+		// Every reachable position was searched without finding a solution
+		UNSOLVABLE,
+		// The node or time budget ran out first
+		BUDGET_EXCEEDED,
+		// Every position within the deepest search was searched without
+		// finding a solution, but some were cut off by the depth, so a
+		// solution may still be longer than that
+		DEPTH_LIMIT
+	}
+
+	private final Status status;
+
+	private final int[] moves;
+
+	private final long nodes;
+
+	private final long elapsedNanos;
+
+	private final long peakMemory;
+
+	/**
+	 * Creates a new result
+	 * 
+	 * @param status
+	 *            how the search ended
+	 * @param moves
+	 *            the int codes of the solution moves, empty if not solved
+	 * @param nodes
+	 *            the long amount of positions expanded
+	 * @param elapsedNanos
+	 *            the long amount of nanoseconds the search took
+	 * @param peakMemory
+	 *            the long amount of heap bytes in use at the peak
+	 */
+	public SolveResult(Status status, int[] moves, long nodes,
+			long elapsedNanos, long peakMemory)
+	{
+		this.status = status;
+		this.moves = moves;
+		this.nodes = nodes;
+		this.elapsedNanos = elapsedNanos;
+		this.peakMemory = peakMemory;
+	}
+
+	/**
+	 * Returns how the search ended
+	 * 
+	 * @return the Status of the search
+	 */
+	public Status getStatus()
+	{
+		return status;
+	}
+
+	/**
+	 * Returns if a solution was found
+	 * 
+	 * @return true if the status is SOLVED, false otherwise
+	 */
+	public boolean isSolved()
+	{
+		return status == Status.SOLVED;
+	}
+
+	/**
+	 * Returns the moves of the solution, in the order they are played
+	 * 
+	 * @return the int codes of the moves (see GameState.move)
+	 */
+	public int[] getMoves()
+	{
+		return moves;
+	}
+
+	/**
+	 * Returns the amount of positions the search expanded
+	 * 
+	 * @return the long amount of nodes expanded
+	 */
+	public long getNodes()
+	{
+		return nodes;
+	}
+
+	/**
+	 * Returns how long the search took
+	 * 
+	 * @return the long amount of nanoseconds
+	 */
+	public long getElapsedNanos()
+	{
+		return elapsedNanos;
+	}
+
+	/**
+	 * Returns the speed of the search
+	 * 
+	 * @return the long amount of nodes expanded per second
+	 */
+	public long getNodesPerSecond()
+	{
+		if (elapsedNanos == 0)
+			return 0;
+		return (long) (nodes * 1e9 / elapsedNanos);
+	}
+
+	/**
+	 * Returns the most heap memory in use while searching
+	 * 
+	 * @return the long amount of bytes
+	 */
+	public long getPeakMemory()
+	{
+		return peakMemory;
+	}
+
+	/**
+	 * Creates a String representation of the result
+	 * 
+	 * @return the String with the status, solution length and search
+	 *         statistics
+	 */
+	public String toString()
+	{
+		return String.format(
+				"%s in %d moves, %d nodes, %d ms, %d nodes/s, %d KB peak",
+				status, moves.length, nodes, elapsedNanos / 1000000,
+				getNodesPerSecond(), peakMemory / 1024);
+	}
+}
@@ -0,0 +1,420 @@
+/**
+ * Searches for a solution to a position using iterative deepening A* (IDA*)
+ * over a GameState. Each iteration is a depth first search that applies and
+ * undoes moves in place, cut off when the number of moves so far plus the
+ * weighted heuristic estimate passes a bound. Cards that are safe to go home
+ * are moved there automatically after every move, just like the table does.
+ * The search stops when the node or time budget runs out, or when the thread
+ * running it is interrupted
+ * 
+ * A solver is not thread safe, but can be reused for many positions
+ * 
+ * @author Michelle Pokrass
+ * 
+ */
+public class Solver
+{
+	// The deepest the search will go, in moves chosen by the search
+	static final int MAX_DEPTH = 400;
+
+	// How many nodes to expand between checks of the clock and memory
+	private static final int CHECK_INTERVAL = 4096;
+
+	private final Heuristic heuristic;
+
+	private int weight = 2;
+
+	private long nodeLimit = Long.MAX_VALUE;
+
+	private long timeLimitNanos = Long.MAX_VALUE;
+
+	// Create the state being searched and the buffers for every depth, so
+	// the search itself does not create any objects
+	private final GameState state = new GameState();
+
+	private final int[][] moveBuffers = new int[MAX_DEPTH][GameState.MAX_MOVES];
+
+	private final int[][] scoreBuffers = new int[MAX_DEPTH][GameState.MAX_MOVES];
+
+	// The moves made so far, including automatic moves to the foundations
+	private final int[] path = new int[MAX_DEPTH + 52];
+
+	private int solutionLength;
+
+	// The default size of the table of positions seen
+	private static final int TABLE_MEGABYTES = 16;
+
+	// The positions seen in this iteration and the depth they were seen at
+	private final TranspositionTable visited;
+
+	// Create variables for the statistics of the current search
+	private long nodes;
+
+	private long startTime;
+
+	private long peakMemory;
+
+	private int nextBound;
+
+	private boolean aborted;
+
+	// If a position of the current iteration was cut off at MAX_DEPTH
+	private boolean depthLimited;
+
+	/**
+	 * Creates a new solver with the default heuristic
+	 */
+	public Solver()
+	{
+		this(new FoundationHeuristic());
+	}
+
+	/**
+	 * Creates a new solver
+	 * 
+	 * @param heuristic
+	 *            the Heuristic that guides the search
+	 */
+	public Solver(Heuristic heuristic)
+	{
+		this(heuristic, new TranspositionTable(TABLE_MEGABYTES,
+				TranspositionTable.Replacement.DEPTH_PREFERRED));
+	}
+
+	/**
+	 * Creates a new solver with its own table of positions seen. The memory
+	 * the search uses does not grow beyond the size of the table
+	 * 
+	 * @param heuristic
+	 *            the Heuristic that guides the search
+	 * @param visited
+	 *            the TranspositionTable for the positions seen
+	 */
+	public Solver(Heuristic heuristic, TranspositionTable visited)
+	{
+		this.heuristic = heuristic;
+		this.visited = visited;
+	}
+
+	/**
+	 * Sets how strongly the heuristic counts against the moves made so far.
+	 * A weight of 1 looks for short solutions, higher weights find a solution
+	 * much faster
+	 * 
+	 * @param weight
+	 *            the integer weight of the heuristic, at least 1
+	 */
+	public void setWeight(int weight)
+	{
+		this.weight = weight;
+	}
+
+	/**
+	 * Sets the most positions a search may expand
+	 * 
+	 * @param nodeLimit
+	 *            the long amount of nodes
+	 */
+	public void setNodeLimit(long nodeLimit)
+	{
+		this.nodeLimit = nodeLimit;
+	}
+
+	/**
+	 * Sets the longest a search may run
+	 * 
+	 * @param millis
+	 *            the long amount of milliseconds
+	 */
+	public void setTimeLimit(long millis)
+	{
+		timeLimitNanos = millis * 1000000;
+	}
+
+	/**
+	 * Searches for a solution to a position
+	 * 
+	 * @param position
+	 *            the GameState to solve (it is not changed)
+	 * @return the SolveResult with the solution moves and search statistics
+	 */
+	public SolveResult solve(GameState position)
+	{
+		TableEvents.Solve event = null;
+		if (TableEvents.isRecording())
+		{
+			event = new TableEvents.Solve();
+			event.begin();
+		}
+		SolveResult result = deepen(position);
+		if (event != null)
+			event.end();
+		if (event != null && event.shouldCommit())
+		{
+			event.status = result.getStatus().name();
+			event.nodes = result.getNodes();
+			event.moves = result.getMoves().length;
+			event.commit();
+		}
+		return result;
+	}
+
+	/**
+	 * Searches deeper and deeper iterations until a solution is found, the
+	 * position is shown to be unsolvable or the budget runs out
+	 * 
+	 * @param position
+	 *            the GameState to solve (it is not changed)
+	 * @return the SolveResult with the solution moves and search statistics
+	 */
+	private SolveResult deepen(GameState position)
+	{
+		state.copyFrom(position);
+		nodes = 0;
+		startTime = System.nanoTime();
+		peakMemory = usedMemory();
+		aborted = false;
+
+		int length = autoplay(0);
+		int bound = weight * heuristic.estimate(state);
+		while (true)
+		{
+			nextBound = Integer.MAX_VALUE;
+			depthLimited = false;
+			visited.newSearch();
+			TableEvents.SolverIteration iteration = null;
+			if (TableEvents.isRecording())
+			{
+				iteration = new TableEvents.SolverIteration();
+				iteration.begin();
+			}
+			boolean solved = search(0, length, bound);
+			if (iteration != null)
+				iteration.end();
+			if (iteration != null && iteration.shouldCommit())
+			{
+				iteration.bound = bound;
+				iteration.nodes = nodes;
+				iteration.commit();
+			}
+			if (solved)
+				return result(SolveResult.Status.SOLVED);
+			if (aborted)
+				return result(SolveResult.Status.BUDGET_EXCEEDED);
+			// If nothing was cut off by the bound, every position has been
+			// searched, unless some were too deep to search
+			if (nextBound == Integer.MAX_VALUE)
+				return result(depthLimited ? SolveResult.Status.DEPTH_LIMIT
+						: SolveResult.Status.UNSOLVABLE);
+			bound = nextBound;
+		}
+	}
+
+	/**
+	 * Searches from the current state, one depth first iteration
+	 * 
+	 * @param depth
+	 *            the integer amount of moves chosen so far
+	 * @param length
+	 *            the integer amount of moves in the path so far
+	 * @param bound
+	 *            the integer bound of this iteration
+	 * @return true if a solution was found, false otherwise
+	 */
+	private boolean search(int depth, int length, int bound)
+	{
+		if (state.isSolved())
+		{
+			solutionLength = length;
+			return true;
+		}
+		// Cut off this position if it is too far from a solution for this
+		// iteration, remembering the smallest bound that would include it
+		int estimate = depth + weight * heuristic.estimate(state);
+		if (estimate > bound)
+		{
+			if (estimate < nextBound)
+				nextBound = estimate;
+			return false;
+		}
+		// A position at the deepest depth is not searched, and is
+		// remembered so the position is not called unsolvable
+		if (depth == MAX_DEPTH)
+		{
+			depthLimited = true;
+			return false;
+		}
+		if (outOfBudget())
+			return false;
+
+		// Skip positions already reached with as few moves this iteration,
+		// counting positions that only differ in the order of the cascades
+		// or freecells as the same. Positions near the start of the search
+		// cut off the most work, so they are kept first when the table is
+		// full
+		long key = state.canonicalHash();
+		int seenDepth = visited.get(key);
+		if (seenDepth != TranspositionTable.NOT_FOUND && seenDepth <= depth)
+			return false;
+		visited.put(key, depth, MAX_DEPTH - depth);
+
+		// Generate the moves and sort them so the most promising come first
+		int[] moves = moveBuffers[depth];
+		int[] scores = scoreBuffers[depth];
+		int count = state.generateMoves(moves);
+		for (int index = 0; index < count; index++)
+		{
+			state.apply(moves[index]);
+			scores[index] = heuristic.estimate(state);
+			state.undo(moves[index]);
+		}
+		sort(moves, scores, count);
+
+		// Try every move, taking it back if it does not lead to a solution
+		for (int index = 0; index < count; index++)
+		{
+			int move = moves[index];
+			state.apply(move);
+			path[length] = move;
+			int newLength = autoplay(length + 1);
+			if (search(depth + 1, newLength, bound))
+				return true;
+			undoAutoplay(newLength, length + 1);
+			state.undo(move);
+			if (aborted)
+				return false;
+		}
+		return false;
+	}
+
+	/**
+	 * Moves every card that is safe to go home to its foundation
+	 * 
+	 * @param length
+	 *            the integer amount of moves in the path
+	 * @return the integer amount of moves in the path after the automatic
+	 *         moves
+	 */
+	private int autoplay(int length)
+	{
+		boolean moved = true;
+		while (moved)
+		{
+			moved = false;
+			for (int source = 0; source < GameState.FIRST_FOUNDATION; source++)
+			{
+				byte card = state.topCard(source);
+				if (card == 0)
+					continue;
+				int foundation = GameState.FIRST_FOUNDATION
+						+ GameState.suit(card) - 1;
+				if (state.canPlace(card, foundation)
+						&& state.isSafeToFoundation(card))
+				{
+					int move = GameState.move(source, foundation, 1);
+					state.apply(move);
+					path[length++] = move;
+					moved = true;
+				}
+			}
+		}
+		return length;
+	}
+
+	/**
+	 * Takes back the automatic moves at the end of the path
+	 * 
+	 * @param length
+	 *            the integer amount of moves in the path
+	 * @param start
+	 *            the integer index of the first automatic move
+	 */
+	private void undoAutoplay(int length, int start)
+	{
+		for (int index = length - 1; index >= start; index--)
+			state.undo(path[index]);
+	}
+
+	/**
+	 * Checks the node, time and memory statistics every few thousand nodes
+	 * 
+	 * @return true if the search has run out of nodes or time or has been
+	 *         interrupted, false otherwise
+	 */
+	private boolean outOfBudget()
+	{
+		nodes++;
+		if (nodes >= nodeLimit)
+			aborted = true;
+		else if (nodes % CHECK_INTERVAL == 0)
+		{
+			peakMemory = Math.max(peakMemory, usedMemory());
+			if (System.nanoTime() - startTime >= timeLimitNanos
+					|| Thread.currentThread().isInterrupted())
+				aborted = true;
+		}
+		return aborted;
+	}
+
+	/**
+	 * Sorts moves by their scores, lowest first. The lists are short, so an
+	 * insertion sort is used
+	 * 
+	 * @param moves
+	 *            the int array of moves
+	 * @param scores
+	 *            the int array of scores for the moves
+	 * @param count
+	 *            the integer amount of moves
+	 */
+	private static void sort(int[] moves, int[] scores, int count)
+	{
+		for (int index = 1; index < count; index++)
+		{
+			int move = moves[index];
+			int score = scores[index];
+			int place = index - 1;
+			while (place >= 0 && scores[place] > score)
+			{
+				moves[place + 1] = moves[place];
+				scores[place + 1] = scores[place];
+				place--;
+			}
+			moves[place + 1] = move;
+			scores[place + 1] = score;
+		}
+	}
+
+	/**
+	 * Creates the result of the current search
+	 * 
+	 * @param status
+	 *            how the search ended
+	 * @return the SolveResult
+	 */
+	private SolveResult result(SolveResult.Status status)
+	{
+		int[] moves;
+		if (status == SolveResult.Status.SOLVED)
+		{
+			moves = new int[solutionLength];
+			System.arraycopy(path, 0, moves, 0, solutionLength);
+		}
+		else
+			moves = new int[0];
+		peakMemory = Math.max(peakMemory, usedMemory());
+		return new SolveResult(status, moves, nodes, System.nanoTime()
+				- startTime, peakMemory);
+	}
+
+	/**
+	 * Returns the heap memory in use
+	 * 
+	 * @return the long amount of bytes in use
+	 */
+	private static long usedMemory()
+	{
+		Runtime runtime = Runtime.getRuntime();
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+}
@@ -0,0 +1,148 @@
+/**
+ * Expands a move of several cards between cascades (a supermove) into the
+ * single card moves that make it, through the empty freecells and empty
+ * cascades. Up to (1 + free freecells) cards move by parking all but the
+ * bottom card in the freecells. With an empty cascade, the top part of the
+ * run is moved there first (using the other spaces), then the rest of the
+ * run, then the top part again on top of it. The plan takes time in
+ * proportion to the amount of moves written, and does not create any objects
+ * 
+ * A planner is not thread safe, but can be reused for many moves
+ * 
+ * @author Michelle Pokrass
+ * 
+ */
+public class SupermovePlanner
+{
+	// More than the most single card moves one supermove can expand to,
+	// which is 91 for a run of 13 cards to an empty cascade with 6 empty
+	// cascades to spare
+	public static final int MAX_STEPS = 128;
+
+	// The slots of the spaces that can be used, found when a plan starts
+	private final int[] freecells = new int[GameState.FREECELLS];
+
+	private int freecellCount;
+
+	private final int[] emptyCascades = new int[GameState.CASCADES];
+
+	// The moves being written
+	private int[] steps;
+
+	/**
+	 * Writes the single card moves that make up a legal move
+	 * 
+	 * @param state
+	 *            the GameState before the move (it is not changed)
+	 * @param move
+	 *            the integer code of the move
+	 * @param steps
+	 *            the int array the moves are written to
+	 * @param offset
+	 *            the integer index of the first move to write
+	 * @return the integer index after the last move written
+	 */
+	public int plan(GameState state, int move, int[] steps, int offset)
+	{
+		int count = GameState.moveCount(move);
+		if (count == 1)
+		{
+			steps[offset] = move;
+			return offset + 1;
+		}
+		int source = GameState.moveSource(move);
+		int destination = GameState.moveDestination(move);
+
+		// Find the spaces, leaving out the two cascades of the move
+		freecellCount = 0;
+		for (int freecell = 0; freecell < GameState.FREECELLS; freecell++)
+		{
+			if (state.freecell(freecell) == 0)
+				freecells[freecellCount++] = GameState.FIRST_FREECELL
+						+ freecell;
+		}
+		int emptyCount = 0;
+		for (int cascade = 0; cascade < GameState.CASCADES; cascade++)
+		{
+			if (state.cascadeSize(cascade) == 0 && cascade != destination
+					&& cascade != source)
+				emptyCascades[emptyCount++] = cascade;
+		}
+
+		this.steps = steps;
+		int end = expand(source, destination, count, emptyCount, offset);
+		this.steps = null;
+		return end;
+	}
+
+	/**
+	 * Replays a list of moves from a position, expanding every supermove
+	 * 
+	 * @param start
+	 *            the GameState the moves start from (it is not changed)
+	 * @param moves
+	 *            the int array of legal moves
+	 * @return the int array of single card moves
+	 */
+	public int[] expandAll(GameState start, int[] moves)
+	{
+		GameState state = new GameState();
+		state.copyFrom(start);
+		int[] steps = new int[moves.length * MAX_STEPS];
+		int length = 0;
+		for (int move : moves)
+		{
+			length = plan(state, move, steps, length);
+			state.apply(move);
+		}
+		int[] result = new int[length];
+		System.arraycopy(steps, 0, result, 0, length);
+		return result;
+	}
+
+	/**
+	 * Moves cards from the top of one cascade to another, using the freecells
+	 * and the first few empty cascades
+	 * 
+	 * @param source
+	 *            the integer slot to take the cards from
+	 * @param destination
+	 *            the integer slot to put the cards on
+	 * @param count
+	 *            the integer amount of cards
+	 * @param empties
+	 *            the integer amount of empty cascades that may be used
+	 * @param offset
+	 *            the integer index of the next move to write
+	 * @return the integer index after the last move written
+	 */
+	private int expand(int source, int destination, int count, int empties,
+			int offset)
+	{
+		// Park all but the bottom card in the freecells, move it, then put
+		// the others back on top of it
+		if (count <= freecellCount + 1)
+		{
+			for (int index = 0; index < count - 1; index++)
+				steps[offset++] = GameState.move(source, freecells[index], 1);
+			steps[offset++] = GameState.move(source, destination, 1);
+			for (int index = count - 2; index >= 0; index--)
+				steps[offset++] = GameState.move(freecells[index],
+						destination, 1);
+			return offset;
+		}
+
+		// Use one fewer empty cascade if the rest are enough
+		int part = (1 + freecellCount) << (empties - 1);
+		if (count <= part)
+			return expand(source, destination, count, empties - 1, offset);
+
+		// Move the top part to the last empty cascade, the rest to the
+		// destination, then the top part on top of it
+		int stop = emptyCascades[empties - 1];
+		offset = expand(source, stop, part, empties - 1, offset);
+		offset = expand(source, destination, count - part, empties - 1,
+				offset);
+		return expand(stop, destination, part, empties - 1, offset);
+	}
+}
@@ -0,0 +1,152 @@
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * The Java Flight Recorder events of the table and the solver. An event is
+ * created and begun before the work it times and committed after it. When no
+ * recording is running, begin and commit do nothing and the event is never
+ * created on the heap, so the events can stay in the code. Record them with
+ * java -XX:StartFlightRecording=filename=freecell.jfr FreeCellMain
+ * 
+ * Loading the first event class starts up the recorder classes, which takes
+ * a few hundred milliseconds, so the table only creates its events once a
+ * recorder has been started, and the first frame does not wait for them
+ * 
+ * @author Michelle Pokrass
+ * 
+ */
+public class TableEvents
+{
+	/**
+	 * Checks if a recorder has been started in this JVM, from the command
+	 * line or later, so events may be recorded
+	 * 
+	 * @return true if events should be created, false otherwise
+	 */
+	public static boolean isRecording()
+	{
+		return FlightRecorder.isInitialized();
+	}
+
+	/**
+	 * Painting the table
+	 * 
+	 * @author Michelle Pokrass
+	 * 
+	 */
+	@Name("freecell.Paint")
+	@Label("Paint Table")
+	@Category({ "Freecell", "Table" })
+	public static class Paint extends Event
+	{
+		@Label("From Table Layer")
+		@Description("If the table was copied from the image drawn when a "
+				+ "drag or animation started")
+		public boolean layered;
+	}
+
+	/**
+	 * Animating a card to a new place
+	 * 
+	 * @author Michelle Pokrass
+	 * 
+	 */
+	@Name("freecell.MoveCard")
+	@Label("Move Card")
+	@Category({ "Freecell", "Table" })
+	public static class MoveCard extends Event
+	{
+		@Label("Card")
+		public String card;
+	}
+
+	/**
+	 * Looking for the cards that are safe to move to the foundations
+	 * 
+	 * @author Michelle Pokrass
+	 * 
+	 */
+	@Name("freecell.AutoplayScan")
+	@Label("Autoplay Scan")
+	@Category({ "Freecell", "Table" })
+	public static class AutoplayScan extends Event
+	{
+		@Label("Safe Moves")
+		public int safeMoves;
+	}
+
+	/**
+	 * Undoing a move
+	 * 
+	 * @author Michelle Pokrass
+	 * 
+	 */
+	@Name("freecell.Undo")
+	@Label("Undo Move")
+	@Category({ "Freecell", "Table" })
+	public static class Undo extends Event
+	{
+		@Label("Undo Depth")
+		@Description("The moves that can still be undone")
+		public int depth;
+	}
+
+	/**
+	 * Handling a mouse event on the table
+	 * 
+	 * @author Michelle Pokrass
+	 * 
+	 */
+	@Name("freecell.Mouse")
+	@Label("Mouse Event")
+	@Category({ "Freecell", "Table" })
+	public static class Mouse extends Event
+	{
+		@Label("Action")
+		public String action;
+	}
+
+	/**
+	 * One depth first iteration of a solver search
+	 * 
+	 * @author Michelle Pokrass
+	 * 
+	 */
+	@Name("freecell.SolverIteration")
+	@Label("Solver Iteration")
+	@Category({ "Freecell", "Solver" })
+	public static class SolverIteration extends Event
+	{
+		@Label("Bound")
+		public int bound;
+
+		@Label("Nodes")
+		@Description("The positions expanded by the search so far")
+		public long nodes;
+	}
+
+	/**
+	 * A whole solver search
+	 * 
+	 * @author Michelle Pokrass
+	 * 
+	 */
+	@Name("freecell.Solve")
+	@Label("Solve")
+	@Category({ "Freecell", "Solver" })
+	public static class Solve extends Event
+	{
+		@Label("Status")
+		public String status;
+
+		@Label("Nodes")
+		public long nodes;
+
+		@Label("Solution Moves")
+		public int moves;
+	}
+}
@@ -2,7 +2,10 @@ import java.awt.*;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
 import java.awt.event.MouseMotionListener;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Random;
 
@@ -45,6 +48,11 @@ public class TablePanel extends JPanel
 
 	private Deck myDeck;
 
+	// Where every card is drawn and if it is face up, indexed by card code.
+	// The cards themselves are shared values, so there is one view of each
+	// for the whole life of the table
+	private final CardView[] views = new CardView[64];
+
 	private Hand[] cascades;
 
 	private Hand[] freecells;
@@ -57,27 +65,74 @@ public class TablePanel extends JPanel
 	// destination hand)
 	private Movable selectedItem;
 
-	private Card movingCard;
-
 	private Hand sourceHand;
 
 	private Point lastPoint;
 
-	final static int ANIMATION_FRAMES = 8;
+	// How long the animations take, and the time between the starts of
+	// cards that move one after another, in milliseconds
+	final static int DEAL_TIME = 200;
+
+	final static int DEAL_STAGGER = 10;
+
+	final static int AUTOPLAY_TIME = 150;
+
+	final static int AUTOPLAY_STAGGER = 10;
+
+	final static int WIN_TIME = 300;
+
+	final static int WIN_STAGGER = 30;
+
+	// Moves the cards across the table without blocking the input
+	private final Animator animator = new Animator(this);
 
 	private boolean animate = true;
 
-	// Create variables to keep track of moves, if the game has been one, the
-	// delay in animation
-	private Move move;
+	// Create variables to keep track of moves, if the game has been one
+	private final MoveJournal journal = new MoveJournal();
 
 	private boolean win;
 
 	private boolean autoComplete;
 
-	private Card toAutoPlace;
+	// Finds the cards that are safe to move to the foundations
+	private final Autoplay autoplay = new Autoplay();
+
+	private final int[] safeMoves = new int[52];
+
+	private int safeMoveCount;
+
+	// The highest deal number a random new game can have
+	final static int MAX_DEAL = 1000000;
 
-	private int delay = 0;
+	private long dealNumber;
+
+	// Where finished games are kept, or null to not keep them
+	private GameArchive archive;
+
+	private boolean archived;
+
+	// Deals already known to be winnable, or null to deal any random deal
+	private DealPool dealPool;
+
+	// The table without the moving cards, drawn once when a drag or an
+	// animation starts and copied to the screen for every frame of it
+	private BufferedImage tableLayer;
+
+	private boolean useTableLayer;
+
+	// If the layer shows the table under the cards that are moving, and only
+	// has to be drawn again where the animator says the table has changed
+	private boolean animationLayer;
+
+	// Finds the hand under the mouse, built again when the table is resized
+	private HitTestIndex hitIndex;
+
+	// Searches for hints in the background, and the move shown as a hint
+	// (between hands of the table), or NO_HINT
+	private final HintEngine hints = new HintEngine();
+
+	private int hintMove = HintEngine.NO_HINT;
 
 	/**
 	 * Creates a new panel
@@ -94,6 +149,11 @@ public class TablePanel extends JPanel
 
 		// Set up the deck, cascades, foundations and freecells
 		myDeck = new Deck();
+		for (int index = 0; index < 52; index++)
+		{
+			Card card = myDeck.getCard(index);
+			views[card.getCode()] = new CardView(card);
+		}
 		allHands = new ArrayList<Hand>();
 
 		cascades = new Cascade[8];
@@ -132,44 +192,181 @@ public class TablePanel extends JPanel
 		// Set default win to false and autocomplete to true
 		win = false;
 		autoComplete = true;
+		// The card faces are decoded in the background, and the cards are
+		// drawn face down until they are ready, so draw them again then
+		CardImages.whenLoaded(new Runnable() {
+			/**
+			 * Draws the table again with the card faces
+			 */
+			public void run()
+			{
+				if (useTableLayer)
+					startTableLayer();
+				animationLayer = false;
+				repaint();
+			}
+		});
 	}
 
 	/**
-	 * Restart the game, clearing all essential variables
+	 * Restart the game with a deal from the pool of winnable deals, or a
+	 * random numbered deal if none is ready
 	 */
 	public void newGame()
 	{
-		// Create a new instance of the move class
-		move = new Move();
+		DealPool.Deal pooled = dealPool == null ? null : dealPool.take();
+		if (pooled == null)
+		{
+			newGame(1 + new Random().nextInt(MAX_DEAL));
+			return;
+		}
+		newGame(pooled.getDealNumber());
+		// Show how long the solution of the deal is, as its difficulty
+		if (parentFrame != null)
+			parentFrame.setTitle("Freecell #" + pooled.getDealNumber() + " ("
+					+ pooled.getSolutionLength() + " move solution)");
+	}
+
+	/**
+	 * Restart the game with a numbered deal, clearing all essential variables.
+	 * The same number always gives the same game
+	 * 
+	 * @param dealNumber
+	 *            the long number of the deal, using the classic Microsoft
+	 *            numbering
+	 */
+	public void newGame(long dealNumber)
+	{
+		deal(dealNumber);
+		// Check if any of the cards can be moved to the foundations, if so,
+		// place them
+		if (canAutoComplete())
+			autoComplete();
+		// Check if the game has been one
+		checkWin();
+		// Redraw the panel
+		repaint();
+
+	}
+
+	/**
+	 * Clears the table and deals a numbered deal, forgetting the moves of the
+	 * last game
+	 * 
+	 * @param dealNumber
+	 *            the long number of the deal
+	 */
+	private void deal(long dealNumber)
+	{
+		// Forget the moves and the animations of the last game
+		animator.cancel();
+		clearHint();
+		journal.clear();
+		Metrics.setUndoDepth(0);
+		archived = false;
 		// Clear all the foundations, freecel
 		for (Hand hand : allHands)
 		{
 			hand.clear();
 		}
-		// Create a new deck and shuffle it
+		// Create a new deck and order it as the numbered deal
 		myDeck = new Deck();
-		myDeck.shuffle();
-		delay = 0;
-		// Deal all of the cards in the deck to the 8 cascades in order
+		myDeck.arrangeDeal(dealNumber);
+		this.dealNumber = dealNumber;
+		if (parentFrame != null)
+			parentFrame.setTitle("Freecell #" + dealNumber);
+		// Deal all of the cards in the deck to the 8 cascades in order, each
+		// card flying from the corner a little after the last
 		for (int index = 0; index < 52; index++)
 		{
-			Card newCard = myDeck.dealACard();
+			CardView newCard = views[myDeck.dealACard().getCode()];
+			if (newCard.isFaceUp())
+				newCard.flip();
 			cascades[index % 8].add(newCard);
-			moveACard(newCard, new Point(0, 0), newCard.getLocation());
+			animator.animate(newCard, new Point(0, 0), newCard.getLocation(),
+					index * DEAL_STAGGER, DEAL_TIME);
 		}
 		// Redraw the panel
 		repaint();
-		// Check if any of the cards can be moved to the foundations, if so,
-		// place them
-		while (canAutoComplete())
+	}
+
+	/**
+	 * Returns the current game, to be saved
+	 * 
+	 * @return the GameRecord of the deal number and the moves made
+	 */
+	public GameRecord getRecord()
+	{
+		return new GameRecord(dealNumber, journal.toArray());
+	}
+
+	/**
+	 * Deals a saved game and makes its moves again. The moves are checked on
+	 * a game state first, so the table is not changed if they are not legal
+	 * 
+	 * @param record
+	 *            the GameRecord to load
+	 * @throws IllegalArgumentException
+	 *             if a move of the game is not legal
+	 */
+	public void loadRecord(GameRecord record)
+	{
+		int[] moves = record.getMoves();
+		GameReplay replay = new GameReplay();
+		replay.start(record.getDealNumber());
+		for (int index = 0; index < moves.length; index++)
 		{
-			autoComplete();
+			if (!replay.play(moves[index]))
+				throw new IllegalArgumentException("Move " + (index + 1)
+						+ " of the saved game is not legal");
 		}
-		// Check if the game has been one
-		checkWin();
-		// Redraw the panel
+
+		deal(record.getDealNumber());
+		// The cards are picked up from where they are drawn
+		animator.finish();
+		for (int move : moves)
+		{
+			transfer(GameState.moveSource(move),
+					GameState.moveDestination(move),
+					GameState.moveCount(move));
+			journal.add(move);
+		}
+		// A saved game that was finished has been kept already
+		archived = replay.getState().isSolved();
 		repaint();
+	}
+
+	/**
+	 * Sets where finished games are kept
+	 * 
+	 * @param archive
+	 *            the GameArchive to add finished games to, or null to not keep
+	 *            them
+	 */
+	public void setArchive(GameArchive archive)
+	{
+		this.archive = archive;
+	}
+
+	/**
+	 * Sets the pool that new games are taken from
+	 * 
+	 * @param dealPool
+	 *            the DealPool of winnable deals, or null to deal random deals
+	 */
+	public void setDealPool(DealPool dealPool)
+	{
+		this.dealPool = dealPool;
+	}
 
+	/**
+	 * Returns the number of the current deal
+	 * 
+	 * @return the long deal number
+	 */
+	public long getDealNumber()
+	{
+		return dealNumber;
 	}
 
 	/**
@@ -188,75 +385,140 @@ public class TablePanel extends JPanel
 		autoComplete = false;
 	}
 	/**
-	 * Draw the panel
+	 * Draw the panel, timing how long it takes
 	 */
 	public void paintComponent(Graphics g)
 	{
-		super.paintComponent(g);
-		// Draw all the hands in the panel
-		for (Hand next : allHands)
+		long start = Metrics.start();
+		if (TableEvents.isRecording())
+		{
+			TableEvents.Paint event = new TableEvents.Paint();
+			event.begin();
+			event.layered = paintTable(g);
+			event.commit();
+		}
+		else
+			paintTable(g);
+		Metrics.PAINT.recordSince(start);
+	}
+
+	/**
+	 * Draws the table, the hint and the cards being moved
+	 * 
+	 * @param g
+	 *            the Graphics to draw with
+	 * @return true if the table was copied from the table layer, false if
+	 *         every hand was drawn
+	 */
+	private boolean paintTable(Graphics g)
+	{
+		// While something is moving, the rest of the table does not change,
+		// so copy it from the layer instead of drawing every card
+		boolean layered = useTableLayer || updateAnimationLayer();
+		if (layered)
+			g.drawImage(tableLayer, 0, 0, null);
+		else
 		{
-			next.draw(g);
+			super.paintComponent(g);
+			// Draw all the hands in the panel, skipping the ones outside the
+			// area being repainted
+			for (Hand next : allHands)
+			{
+				if (g.hitClip(next.x, next.y, next.width, next.height))
+					next.draw(g, animator.getMovingCards());
+			}
 		}
 
-		// Draw selected Cascade or Card on top
+		// Outline the cards of the hint and where they go
+		if (hintMove != HintEngine.NO_HINT)
+			drawHint(g);
+
+		// Draw the moving cards, and the selected Cascade or Card on top
+		animator.draw(g);
 		if (selectedItem != null)
 			selectedItem.draw(g);
-		if (movingCard != null)
-			movingCard.draw(g);
+		return layered;
 	}
 
-	// Move a card with animation
 	/**
-	 * Moves the card to its final position
+	 * Draws every hand into the table layer and starts using it for painting,
+	 * until a drag ends and the table changes
+	 */
+	private void startTableLayer()
+	{
+		animationLayer = false;
+		if (drawTableLayer(null, Collections.<CardView> emptyList()))
+			useTableLayer = true;
+	}
+
+	/**
+	 * Brings the table layer up to date with the table under the moving
+	 * cards while an animation runs, so every frame only has to copy it and
+	 * draw the moving cards
 	 * 
-	 * @param cardToMove
-	 *            the card to be moved
-	 * @param pos
-	 *            the starting point
-	 * @param finalPos
-	 *            the ending point
+	 * @return true if the layer can be used for painting, false if nothing
+	 *         is moving or the panel has not been laid out
 	 */
-	public void moveACard(final Card cardToMove, Point pos, Point finalPos)
+	private boolean updateAnimationLayer()
 	{
-		// Find the small increment
-		int dx = (finalPos.x - pos.x) / ANIMATION_FRAMES;
-		int dy = (finalPos.y - pos.y) / ANIMATION_FRAMES;
-		movingCard = cardToMove;
-		// For every animation frame, add the small increment and redraw
-		for (int times = 1; times <= ANIMATION_FRAMES; times++)
+		Rectangle changed = animator.takeChanged();
+		if (!animator.isRunning())
 		{
-			pos.x += dx;
-			pos.y += dy;
-			cardToMove.setLocation(pos.x, pos.y);
-
-			// Update the drawing area
-			paintImmediately(0, 0, getWidth(), getHeight());
-			delay(delay);
-
+			animationLayer = false;
+			return false;
 		}
-		movingCard = null;
-		if (!cardToMove.isFaceUp())
-			cardToMove.flip();
-		cardToMove.setLocation(finalPos);
+		// Draw the whole layer again if it shows something else
+		if (!animationLayer)
+			animationLayer = drawTableLayer(null, animator.getMovingCards());
+		else if (changed != null)
+			animationLayer = drawTableLayer(changed, animator
+					.getMovingCards());
+		return animationLayer;
 	}
 
-	// A simple method to delay
 	/**
-	 * Pauses the thread
+	 * Draws the hands into the table layer, creating the layer if the size
+	 * of the panel has changed
 	 * 
-	 * @param msec
-	 *            the integer amount of milliseconds to delay
+	 * @param area
+	 *            the Rectangle of the layer to draw, or null to draw all of it
+	 * @param hidden
+	 *            the Collection of Cards not to draw
+	 * @return true if the layer was drawn, false if the panel has not been
+	 *         laid out yet
 	 */
-	private void delay(int msec)
+	private boolean drawTableLayer(Rectangle area, Collection<CardView> hidden)
 	{
-		try
+		int width = getWidth();
+		int height = getHeight();
+		// The panel has not been laid out yet
+		if (width <= 0 || height <= 0)
+			return false;
+		// Only create a new image when the size of the panel changes, and
+		// then draw all of it
+		if (tableLayer == null || tableLayer.getWidth() != width
+				|| tableLayer.getHeight() != height)
 		{
-			Thread.sleep(msec);
+			GraphicsConfiguration config = getGraphicsConfiguration();
+			if (config != null)
+				tableLayer = config.createCompatibleImage(width, height);
+			else
+				tableLayer = new BufferedImage(width, height,
+						BufferedImage.TYPE_INT_RGB);
+			area = null;
 		}
-		catch (Exception e)
+		Graphics2D g = tableLayer.createGraphics();
+		if (area != null)
+			g.clip(area);
+		g.setColor(getBackground());
+		g.fillRect(0, 0, width, height);
+		for (Hand next : allHands)
 		{
+			if (g.hitClip(next.x, next.y, next.width, next.height))
+				next.draw(g, hidden);
 		}
+		g.dispose();
+		return true;
 	}
 
 	// Inner class to handle mouse events
@@ -271,14 +533,26 @@ public class TablePanel extends JPanel
 
 		public void mousePressed(MouseEvent event)
 		{
-			Point selectedPoint = event.getPoint();
-
-			// Pick up one of cards from a Hand
-			for (Hand next : allHands)
-				if (next.contains(selectedPoint))
+			TableEvents.Mouse traced = beginMouse();
+			long start = Metrics.start();
+			try
+			{
+				Point selectedPoint = event.getPoint();
+				// Skip the rest of any animation, so every card is where it
+				// belongs before one is picked up
+				animator.finish();
+				// The table is about to change, so the hint is no use
+				clearHint();
+
+				// Pick up one of cards from a Hand, if it can be moved
+				Hand next = handAt(selectedPoint);
+				if (next != null && next.canPickUp(selectedPoint))
 				{
 					// Split off this section or pick up a Card
 					selectedItem = next.pickUp(selectedPoint);
+					// Draw the rest of the table once for the whole drag
+					if (selectedItem != null)
+						startTableLayer();
 
 					repaint();
 					// In case our move is not valid, we want to return the
@@ -286,100 +560,378 @@ public class TablePanel extends JPanel
 					sourceHand = next;
 					lastPoint = selectedPoint;
 					repaint();
-					return;
 				}
+			}
+			finally
+			{
+				endMouse(traced, "pressed", start);
+			}
 		}
 
 		public void mouseReleased(MouseEvent event)
 		{
-			if (selectedItem != null)
+			TableEvents.Mouse traced = beginMouse();
+			long start = Metrics.start();
+			try
 			{
-				// Check to see if we can add this to another cascade
-				// foundation or Freecell
-				for (Hand next : allHands)
-					if (selectedItem.intersects(next))
-					{
-						if (next.canPlace(selectedItem))
+				// The drag is over, so the table is about to change
+				useTableLayer = false;
+				if (selectedItem != null)
+				{
+					// Check to see if we can add this to another cascade
+					// foundation or Freecell
+					for (Hand next : allHands)
+						if (selectedItem.intersects(next))
 						{
-							// If there are enough free spaces, place the item,
-							// create a new move
-							if (enoughFreecells(selectedItem, next))
+							if (next.canPlace(selectedItem))
 							{
-								next.place(selectedItem);
-								move = new Move(selectedItem, sourceHand, next);
-								// Check for autocompletion and check for wins
-								while (canAutoComplete())
+								// If there are enough free spaces, place the
+								// item, create a new move
+								if (enoughFreecells(selectedItem, next))
+								{
+									next.place(selectedItem);
+									if (next != sourceHand)
+										recordMove(encodeMove(selectedItem,
+												sourceHand, next));
+									// Check for autocompletion and check for
+									// wins
+									if (canAutoComplete())
+										autoComplete();
+									checkWin();
+									repaint();
+								}
+								// If there are not enough free spaces, return
+								// the item to its source
+								else
 								{
-									autoComplete();
+									sourceHand.place(selectedItem);
 								}
-								checkWin();
-								repaint();
 							}
-							// If there are not enough free spaces, return the
-							// item to its source
+							// If the item cannot be placed, return it to its
+							// source
 							else
 							{
 								sourceHand.place(selectedItem);
 							}
+							selectedItem = null;
+							repaint();
+							return;
 						}
-						// If the item cannot be placed, return it to its source
-						else
-						{
-							sourceHand.place(selectedItem);
-						}
-						selectedItem = null;
-						repaint();
-						return;
-					}
 
-				// Return to original spot
-				sourceHand.place(selectedItem);
-				selectedItem = null;
+					// Return to original spot
+					sourceHand.place(selectedItem);
+					selectedItem = null;
 
-				repaint();
+					repaint();
+				}
+			}
+			finally
+			{
+				endMouse(traced, "released", start);
 			}
 		}
 	}
 
+	/**
+	 * Returns the hand under a point, building the hit test index first if
+	 * the table has changed size
+	 * 
+	 * @param point
+	 *            the Point on the table
+	 * @return the Hand containing the point, or null if there is none
+	 */
+	private Hand handAt(Point point)
+	{
+		// Use the preferred size until the panel is shown
+		int width = getWidth() > 0 ? getWidth() : getPreferredSize().width;
+		int height = getHeight() > 0 ? getHeight()
+				: getPreferredSize().height;
+		if (hitIndex == null || !hitIndex.hasSize(width, height))
+			hitIndex = new HitTestIndex(allHands, width, height);
+		return hitIndex.handAt(point);
+	}
+
 	/**
 	 * Undoes the last move and repaints the panel
 	 */
 	void undoMove()
 	{
-		// Get the last item moved, its destination, and its source
-		selectedItem = Move.getLastObject();
-		Hand newSource = Move.getLastDest();
-		Hand newDest = Move.getLastSource();
+		if (!journal.canUndo())
+			return;
+		TableEvents.Undo event = null;
+		if (TableEvents.isRecording())
+		{
+			event = new TableEvents.Undo();
+			event.begin();
+		}
+		clearHint();
+		animator.finish();
+		// Move the cards back from the destination to the source
+		int lastMove = journal.undo();
+		transfer(GameState.moveDestination(lastMove),
+				GameState.moveSource(lastMove), GameState.moveCount(lastMove));
+		Metrics.moveUndone(journal.size());
+		if (event != null)
+		{
+			event.depth = journal.size();
+			event.commit();
+		}
+		// Redraw the panel
+		repaint();
+
+	}
+
+	/**
+	 * Makes the last undone move again and repaints the panel
+	 */
+	void redoMove()
+	{
+		if (!journal.canRedo())
+			return;
+		clearHint();
+		animator.finish();
+		int nextMove = journal.redo();
+		transfer(GameState.moveSource(nextMove),
+				GameState.moveDestination(nextMove),
+				GameState.moveCount(nextMove));
+		Metrics.moveMade(journal.size());
+		checkWin();
+		// Redraw the panel
+		repaint();
+	}
+
+	/**
+	 * Looks for a good next move in the background, and outlines it when it
+	 * is found
+	 */
+	public void showHint()
+	{
+		clearHint();
+		hints.findHint(getGameState(), new HintEngine.Listener() {
+			public void hintFound(int move)
+			{
+				if (move == HintEngine.NO_HINT)
+				{
+					JOptionPane.showMessageDialog(parentFrame,
+							"No winning move was found from here.", "Hint",
+							JOptionPane.INFORMATION_MESSAGE);
+					return;
+				}
+				hintMove = toTableMove(move);
+				repaint();
+			}
+		});
+	}
 
-		// Create a new hand for the new destination
-		Hand newDestination;
-		// Pick up the object from its new source
-		newSource.pickUp(selectedItem);
-		// Cast the new destination
-		if (newDest instanceof Cascade)
+	/**
+	 * Stops looking for a hint and stops showing the last one
+	 */
+	private void clearHint()
+	{
+		hints.cancel();
+		if (hintMove != HintEngine.NO_HINT)
 		{
-			newDestination = (Cascade) newDest;
+			hintMove = HintEngine.NO_HINT;
+			repaint();
 		}
-		else if (newDest instanceof Freecell)
+	}
+
+	/**
+	 * Turns a move of a game state into a move between hands of the table.
+	 * The table keeps a suit on whichever foundation its ace was put on,
+	 * while a game state keeps each suit on its own foundation
+	 * 
+	 * @param move
+	 *            the integer code of the GameState move
+	 * @return the integer code of the move on the table
+	 */
+	private int toTableMove(int move)
+	{
+		int destination = GameState.moveDestination(move);
+		if (destination >= GameState.FIRST_FOUNDATION)
 		{
-			newDestination = (Freecell) newDest;
+			// Use the foundation of the suit, or else the first empty one
+			int suit = destination - GameState.FIRST_FOUNDATION + 1;
+			int empty = -1;
+			for (int index = 0; index < foundations.length; index++)
+			{
+				if (foundations[index].isEmpty())
+				{
+					if (empty < 0)
+						empty = index;
+				}
+				else if (foundations[index].getTopCard().getCard()
+						.getSuit() == suit)
+					empty = index;
+			}
+			destination = GameState.FIRST_FOUNDATION + empty;
 		}
-		else if (newDest instanceof Foundation)
+		return GameState.move(GameState.moveSource(move), destination,
+				GameState.moveCount(move));
+	}
+
+	/**
+	 * Outlines the cards of the hint and the hand they should go to
+	 * 
+	 * @param g
+	 *            Graphics to draw in
+	 */
+	private void drawHint(Graphics g)
+	{
+		Hand source = allHands.get(GameState.moveSource(hintMove));
+		Hand destination = allHands.get(GameState.moveDestination(hintMove));
+		int count = GameState.moveCount(hintMove);
+		// The cards from the bottom card of the move to the top
+		Rectangle cards = source.getTopCard().getBounds();
+		cards.add(source.getCard(source.getNoOfCards() - count).getBounds());
+		Rectangle target = destination.isEmpty() ? destination.getBounds()
+				: destination.getTopCard().getBounds();
+
+		g.setColor(Color.YELLOW);
+		for (int width = 0; width < 3; width++)
+		{
+			g.drawRect(cards.x - width, cards.y - width, cards.width + 2
+					* width - 1, cards.height + 2 * width - 1);
+			g.drawRect(target.x - width, target.y - width, target.width + 2
+					* width - 1, target.height + 2 * width - 1);
+		}
+	}
+
+	/**
+	 * Moves the top cards of one hand to another, without checking the rules
+	 * 
+	 * @param source
+	 *            the integer slot of the hand to take the cards from
+	 * @param destination
+	 *            the integer slot of the hand to put the cards on
+	 * @param count
+	 *            the integer amount of cards to move
+	 */
+	private void transfer(int source, int destination, int count)
+	{
+		Hand from = allHands.get(source);
+		Hand to = allHands.get(destination);
+		Movable item;
+		// Pick up the top card, or the run starting at the card count cards
+		// from the top
+		if (count == 1)
 		{
-			newDestination = (Foundation) newDest;
+			item = from.getTopCard();
+			from.pickUp(item);
 		}
 		else
+			item = from.pickUp(from.getCard(from.getNoOfCards() - count)
+					.getLocation());
+		to.place(item);
+	}
+
+	/**
+	 * Returns the encoded move of an item between two hands on the table
+	 * 
+	 * @param item
+	 *            the Movable card or cascade that moved
+	 * @param source
+	 *            the Hand it moved from
+	 * @param destination
+	 *            the Hand it moved to
+	 * @return the integer move, encoded like a GameState move
+	 */
+	private int encodeMove(Movable item, Hand source, Hand destination)
+	{
+		int count = 1;
+		if (item instanceof Hand)
+			count = ((Hand) item).getNoOfCards();
+		return GameState.move(allHands.indexOf(source),
+				allHands.indexOf(destination), count);
+	}
+
+	/**
+	 * Copies the cards on the table into a headless game state, which can be
+	 * searched without touching the cards on the screen
+	 * 
+	 * @return a new GameState holding the same cards as this table
+	 */
+	GameState getGameState()
+	{
+		GameState state = new GameState();
+		// Copy every cascade from the bottom card up
+		for (int index = 0; index < cascades.length; index++)
+		{
+			for (int card = 0; card < cascades[index].getNoOfCards(); card++)
+				state.addToCascade(index, cascades[index].getCard(card)
+						.getCard().getCode());
+		}
+		// Copy the freecells, skipping the empty ones
+		for (int index = 0; index < freecells.length; index++)
+		{
+			if (!(freecells[index].isEmpty()))
+				state.setFreecell(index, freecells[index].getTopCard()
+						.getCard().getCode());
+		}
+		// Only the top card of each foundation matters
+		for (Hand foundation : foundations)
+		{
+			if (!(foundation.isEmpty()))
+			{
+				Card top = foundation.getTopCard().getCard();
+				state.setFoundation(top.getSuit(), top.getRank());
+			}
+		}
+		return state;
+	}
+
+	/**
+	 * Replaces the cards on the table with the cards of a headless game
+	 * state, all face up
+	 * 
+	 * @param state
+	 *            the GameState to show
+	 */
+	void loadGameState(GameState state)
+	{
+		animator.cancel();
+		for (Hand hand : allHands)
+		{
+			hand.clear();
+		}
+		for (int index = 0; index < cascades.length; index++)
 		{
-			newDestination = newDest;
+			for (int card = 0; card < state.cascadeSize(index); card++)
+				cascades[index].add(faceUpCard(state.cascadeCard(index, card)));
+		}
+		for (int index = 0; index < freecells.length; index++)
+		{
+			if (state.freecell(index) != 0)
+				freecells[index].add(faceUpCard(state.freecell(index)));
+		}
+		// Fill the foundations from the left, one for each suit that has
+		// cards home
+		int foundation = 0;
+		for (int suit = 1; suit <= 4; suit++)
+		{
+			for (int rank = 1; rank <= state.foundationRank(suit); rank++)
+				foundations[foundation].add(faceUpCard(GameState.card(rank,
+						suit)));
+			if (state.foundationRank(suit) > 0)
+				foundation++;
 		}
-		// Place the picked up obkect
-		newDestination.place(selectedItem);
 		selectedItem = null;
-		// Remove the move from the move class
-		Move.undo();
-		// Redraw the panel
 		repaint();
+	}
 
+	/**
+	 * Returns the view of the card with a card code, face up
+	 * 
+	 * @param code
+	 *            the byte code of the card
+	 * @return the CardView of the card
+	 */
+	private CardView faceUpCard(byte code)
+	{
+		CardView card = views[code];
+		if (!card.isFaceUp())
+			card.flip();
+		return card;
 	}
 
 	/**
@@ -395,7 +947,7 @@ public class TablePanel extends JPanel
 	{
 		boolean enough = false;
 		// If the item is a card, return true;
-		if (item instanceof Card)
+		if (item instanceof CardView)
 		{
 			return true;
 		}
@@ -467,27 +1019,61 @@ public class TablePanel extends JPanel
 			win = true;
 		else
 			win = false;
-		// If the game has been won, change the delay and move all the cards to
-		// a random position
+		// If the game has been won, move all the cards to a random position,
+		// one after another once the cards already moving have landed
 		if (win)
 		{
-			delay = 10;
+			archiveGame();
 			Random rndm = new Random();
-
+			long start = animator.getTimeLeft();
 			for (int index = 51; index >= 0; index--)
-				moveACard(myDeck.getCard(index), myDeck.getCard(index)
-						.getLocation(),
-						new Point(rndm.nextInt(910), rndm.nextInt(510)));
-			// Display a dialog box stating that the game has been won
-			JOptionPane.showMessageDialog(parentFrame,
-					"Congratulations, You have won the game!", "You win!",
-					JOptionPane.INFORMATION_MESSAGE);
+			{
+				CardView card = views[myDeck.getCard(index).getCode()];
+				animator.animate(card, card.getLocation(),
+						new Point(rndm.nextInt(910), rndm.nextInt(510)), start
+								+ (51 - index) * WIN_STAGGER, WIN_TIME);
+			}
+			// Display a dialog box stating that the game has been won, once
+			// the cards have stopped
+			animator.whenFinished(new Runnable() {
+				public void run()
+				{
+					JOptionPane.showMessageDialog(parentFrame,
+							"Congratulations, You have won the game!",
+							"You win!", JOptionPane.INFORMATION_MESSAGE);
+				}
+			});
 		}
 		repaint();
 	}
 
 	/**
-	 * Checks if any cards can be moved up to the foundation
+	 * Adds the game to the archive once it has been won
+	 */
+	private void archiveGame()
+	{
+		if (archive == null || archived)
+			return;
+		archived = true;
+		try
+		{
+			int[] moves = journal.toArray();
+			archive.append(dealNumber, moves, moves.length);
+		}
+		catch (IOException e)
+		{
+			// The game is still won, it is only missing from the history
+			archive = null;
+			JOptionPane.showMessageDialog(parentFrame,
+					"Could not keep the game: " + e.getMessage(), "Error",
+					JOptionPane.ERROR_MESSAGE);
+		}
+	}
+
+	/**
+	 * Checks if any cards can be moved up to the foundation, finding every
+	 * card that is safe to move there, and the cards under them that become
+	 * safe once they have gone
 	 * 
 	 * @return true if a card can be moved up, false otherwise
 	 */
@@ -496,249 +1082,93 @@ public class TablePanel extends JPanel
 		// If the user does not want auto completion, return false
 		if (!(autoComplete))
 			return false;
-		// Go through every foundation
-		for (Hand foundation : foundations)
+		TableEvents.AutoplayScan event = null;
+		if (TableEvents.isRecording())
 		{
-			// If the foundation is empty and the top card of a cascade or
-			// freecell is an
-			// ace, return true and set the card to place as the ace
-			if (foundation.getTopCard() == null)
-			{
-				for (Hand cascade : cascades)
-				{
-					if (cascade.isEmpty())
-						continue;
-					if (cascade.getTopCard().getRank() == 1)
-					{
-						toAutoPlace = cascade.getTopCard();
-						return true;
-					}
-				}
-				for (Hand freecell : freecells)
-				{
-					if (freecell.isEmpty())
-						continue;
-					if (freecell.getTopCard().getRank() == 1)
-					{
-						toAutoPlace = freecell.getTopCard();
-						return true;
-					}
-				}
-			}
-			else
-			{
-				// Get the suit and rank of the foundation card
-				int foundationSuit = foundation.getTopCard().getSuit();
-				int foundationRank = foundation.getTopCard().getRank();
-				// Check every cascade, skipping the empty ones
-				for (Hand cascade : cascades)
-				{
-					if (cascade.isEmpty())
-						continue;
-					// Get the suit and rank of the top of the cascade
-					int cascadeSuit = cascade.getTopCard().getSuit();
-					int cascadeRank = cascade.getTopCard().getRank();
-					// Check if the suit and rank are correct (same suit,
-					// cascade rank one greater than foundation)
-					boolean suit = (foundationSuit == cascadeSuit);
-					boolean rank = (foundationRank + 1 == cascadeRank);
-					if (suit && rank)
-					{
-						// Check if the 2 cards of the opposite colour with one
-						// rank less are still on the board (not in the
-						// foundation)
-						int amount = 0;
-						for (Hand foundation2 : foundations)
-						{
-							// Check every foundation, skipping the empty ones
-							if (foundation2.isEmpty())
-								continue;
-							else
-							{
-								// Check every card in the foundation
-								for (int index = 0; index < foundation2
-										.getNoOfCards(); index++)
-									// Check if the card is opposite colour and
-									// one rank less than the cascade card
-									if ((foundation2.getCard(index).getRank() + 1 == cascadeRank)
-											&& (foundation2.getCard(index)
-													.getSuit() % 2 != cascadeSuit % 2))
-										amount++;
-							}
-						}
-						if (amount == 2)
-						{
-							// If both cards are in the foundation, return true
-							// and set the top of the cascade as the card to be
-							// auto placed
-							toAutoPlace = cascade.getTopCard();
-							return true;
-						}
-						else
-							continue;
-
-					}
-
-				}
+			event = new TableEvents.AutoplayScan();
+			event.begin();
+		}
+		long start = Metrics.start();
+		safeMoveCount = autoplay.findSafeMoves(allHands, safeMoves);
+		Metrics.AUTOPLAY_SCAN.recordSince(start);
+		if (event != null)
+		{
+			event.safeMoves = safeMoveCount;
+			event.commit();
+		}
+		return safeMoveCount > 0;
+	}
 
-				// Go through every freecell, skipping the empty ones
-				for (Hand freecell : freecells)
-				{
-					if (freecell.isEmpty())
-						continue;
-					// Get the suit and rank of the freecell cards
-					int freecellSuit = freecell.getTopCard().getSuit();
-					int freecellRank = freecell.getTopCard().getRank();
-					// Check if the suit and rank are correct (same suit,
-					// freecell rank one greater than foundation)
-					boolean suit = (foundationSuit == freecellSuit);
-					boolean rank = (foundationRank + 1 == freecellRank);
-					if (suit && rank)
-					{
-						// Check if the 2 cards of the opposite colour with one
-						// rank less are still on the board (not in the
-						// foundation)
-						int amount = 0;
-						// Check every foundation, skipping the empty ones
-						for (Hand foundation2 : foundations)
-						{
-							if (foundation2.isEmpty())
-								continue;
-							else
-							{
-								// Check every card in the foundation
-								for (int index = 0; index < foundation2
-										.getNoOfCards(); index++)
-									// Check if the card is opposite colour and
-									// one rank less than the cascade card
-									if ((foundation2.getCard(index).getRank() + 1 == freecellRank)
-											&& (foundation2.getCard(index)
-													.getSuit() % 2 != freecellSuit % 2))
-										amount++;
-							}
-						}
-						if (amount == 2)
-						{
-							// If both cards are in the foundation, return true
-							// and set the top of the cascade as the card to be
-							// auto placed
-							toAutoPlace = freecell.getTopCard();
-							return true;
-						}
-						else
-							continue;
-					}
+	/**
+	 * Adds a move made on the table to the journal, and counts it
+	 * 
+	 * @param move
+	 *            the integer code of the move
+	 */
+	private void recordMove(int move)
+	{
+		journal.add(move);
+		Metrics.moveMade(journal.size());
+	}
 
-				}
+	/**
+	 * Starts the event of a mouse handler, if a recorder is running
+	 * 
+	 * @return the begun TableEvents.Mouse, or null if nothing records it
+	 */
+	private TableEvents.Mouse beginMouse()
+	{
+		if (!TableEvents.isRecording())
+			return null;
+		TableEvents.Mouse traced = new TableEvents.Mouse();
+		traced.begin();
+		return traced;
+	}
 
-			}
-		}
-		return false;
+	/**
+	 * Counts the time a mouse handler took and commits its event
+	 * 
+	 * @param traced
+	 *            the TableEvents.Mouse from beginMouse, or null
+	 * @param action
+	 *            the String name of the mouse action
+	 * @param start
+	 *            the long time from Metrics.start
+	 */
+	private void endMouse(TableEvents.Mouse traced, String action, long start)
+	{
+		Metrics.MOUSE.recordSince(start);
+		if (traced == null)
+			return;
+		traced.action = action;
+		traced.commit();
 	}
 
 	/**
-	 * Moves the identified card to its correct foundation
+	 * Moves the cards found by canAutoComplete to their foundations
 	 */
 	void autoComplete()
 	{
-		// Change the delay
-		delay = 30;
-		// Go through every cascade, check if its top card matches the card to
-		// autoplace
-		for (Hand cascade : cascades)
+		// Fly the cards up together, each starting a little after the last,
+		// once the cards already moving have landed
+		long start = animator.getTimeLeft();
+		for (int index = 0; index < safeMoveCount; index++)
 		{
-			if (cascade.getTopCard() == toAutoPlace)
-			{
-				// Go through every foundation
-				for (Hand foundation : foundations)
-				{
-					// Check if the foundation is empty and the card to be
-					// placed is an ace
-					if ((foundation.getTopCard() == null)
-							&& (toAutoPlace.getRank() == 1))
-					{
-						// Move the card, remove it from its position, place it
-						// in its new position
-						moveACard(toAutoPlace, toAutoPlace.getLocation(),
-								foundation.getLocation());
-						cascade.pickUp(toAutoPlace);
-						foundation.place(toAutoPlace);
-						// Add a new move, quit the method
-						move = new Move(toAutoPlace, cascade, foundation);
-						toAutoPlace = null;
-						return;
-					}
-					// Check if the foundation is the same suit and one rank
-					// less than the card to be autoplaced
-					else if ((foundation.getTopCard().getSuit() == toAutoPlace
-							.getSuit())
-							&& (foundation.getTopCard().getRank() + 1 == toAutoPlace
-									.getRank()))
-					{
-						// Move the card, remove it from its position, place it
-						// in its new position
-						moveACard(toAutoPlace, toAutoPlace.getLocation(),
-								foundation.getLocation());
-						cascade.pickUp(toAutoPlace);
-						foundation.place(toAutoPlace);
-						// Add a new move, quit the method
-						move = new Move(toAutoPlace, cascade, foundation);
-						toAutoPlace = null;
-						return;
-
-					}
-				}
-
-			}
+			Hand source = allHands.get(GameState.moveSource(safeMoves[index]));
+			Hand foundation = allHands.get(GameState
+					.moveDestination(safeMoves[index]));
+			CardView card = source.getTopCard();
+			// Remove the card from its position, place it in its new position
+			// and move it there
+			Point from = card.getLocation();
+			source.pickUp(card);
+			foundation.place(card);
+			animator.animate(card, from, card.getLocation(), start + index
+					* AUTOPLAY_STAGGER, AUTOPLAY_TIME);
+			// Add a new move
+			recordMove(safeMoves[index]);
 		}
-		// Go through every freecell, check if its top card matches the card to
-		// autoplace, skip the empty ones
-		for (Hand freecell : freecells)
-		{
-			if (freecell.isEmpty())
-				continue;
-			if (freecell.getTopCard() == toAutoPlace)
-			{
-				// Check if the foundation is empty and card to be placed is an
-				// ace
-				for (Hand foundation : foundations)
-				{
-
-					if ((foundation.getTopCard() == null)
-							&& (toAutoPlace.getRank() == 1))
-					{
-						// Move the card, remove it, place it
-						moveACard(toAutoPlace, toAutoPlace.getLocation(),
-								foundation.getLocation());
-						freecell.pickUp(toAutoPlace);
-						foundation.place(toAutoPlace);
-						// Create a new move, quit the method
-						move = new Move(toAutoPlace, freecell, foundation);
-						toAutoPlace = null;
-						return;
-					}
-					// Check if the foundation is the same suit and one rank
-					// less than the card to auto place
-					else if ((foundation.getTopCard().getSuit() == toAutoPlace
-							.getSuit())
-							&& (foundation.getTopCard().getRank() + 1 == toAutoPlace
-									.getRank()))
-					{
-						// Move the card, remove it, place it
-						moveACard(toAutoPlace, toAutoPlace.getLocation(),
-								foundation.getLocation());
-						freecell.pickUp(toAutoPlace);
-						foundation.place(toAutoPlace);
-						// Create a new move, quit the method
-						move = new Move(toAutoPlace, freecell, foundation);
-						toAutoPlace = null;
-						return;
-					}
-				}
-
-			}
-		}
-		toAutoPlace = null;
+		safeMoveCount = 0;
 
 	}
 
@@ -755,13 +1185,13 @@ public class TablePanel extends JPanel
 		{
 			// Set the cursor to the hand if we are on a card
 			Point currentPoint = event.getPoint();
-			// Count down, since higher cards are on top
-			for (Hand next : allHands)
-				if (next.canPickUp(currentPoint))
-				{
-					setCursor(Cursor.getPredefinedCursor(Cursor.HAND_CURSOR));
-					return;
-				}
+			// Only the hand under the mouse has to be checked
+			Hand next = handAt(currentPoint);
+			if (next != null && next.canPickUp(currentPoint))
+			{
+				setCursor(Cursor.getPredefinedCursor(Cursor.HAND_CURSOR));
+				return;
+			}
 
 			// Otherwise we just use the default cursor
 			setCursor(Cursor.getDefaultCursor());
@@ -769,33 +1199,45 @@ public class TablePanel extends JPanel
 
 		public void mouseDragged(MouseEvent event)
 		{
-			Point currentPoint = event.getPoint();
-
-			if (selectedItem != null)
+			TableEvents.Mouse traced = beginMouse();
+			long start = Metrics.start();
+			try
 			{
-				// If the moving item is a cascade, add it to all hands
-				if (selectedItem instanceof Cascade)
-				{
+				Point currentPoint = event.getPoint();
 
-					Hand moving = (Hand) selectedItem;
-					allHands.add(moving);
-				}
+				if (selectedItem != null)
+				{
+					// If the moving item is a cascade, add it to all hands
+					if (selectedItem instanceof Cascade)
+					{
 
-				// We use the difference between the lastPoint and the
-				// currentPoint to move the Cascade so that the position of
-				// the mouse on the Cascade doesn't matter.
-				// i.e. we can drag the card from any point on the card image
-				selectedItem.move(lastPoint, currentPoint);
-				lastPoint = currentPoint;
+						Hand moving = (Hand) selectedItem;
+						allHands.add(moving);
+					}
 
-				repaint();
-				// Remove the cascade from all hands
-				if (selectedItem instanceof Cascade)
-				{
-					Hand moving = (Hand) selectedItem;
-					allHands.remove(moving);
+					// We use the difference between the lastPoint and the
+					// currentPoint to move the Cascade so that the position of
+					// the mouse on the Cascade doesn't matter.
+					// i.e. we can drag the card from any point on the card
+					// image
+					Rectangle oldBounds = selectedItem.getBounds();
+					selectedItem.move(lastPoint, currentPoint);
+					lastPoint = currentPoint;
+
+					// Repaint only where the item was and where it is now
+					repaint(oldBounds.union(selectedItem.getBounds()));
+					// Remove the cascade from all hands
+					if (selectedItem instanceof Cascade)
+					{
+						Hand moving = (Hand) selectedItem;
+						allHands.remove(moving);
+					}
 				}
 			}
+			finally
+			{
+				endMouse(traced, "dragged", start);
+			}
 		}
 	}
 }
@@ -0,0 +1,185 @@
+import java.util.Arrays;
+
+/**
+ * A fixed size hash table of positions, keyed by their 64-bit hash, that
+ * remembers a value and a depth for each position. The entries are kept in
+ * primitive arrays and looked up with open addressing in small buckets, so
+ * the table never grows: when a bucket is full an entry is replaced by the
+ * replacement policy
+ * 
+ * @author Michelle Pokrass
+ * 
+ */
+public class TranspositionTable
+{
+	/**
+	 * How to choose the entry to replace when a bucket is full
+	 */
+	public enum Replacement
+	{
+		// Always store the new entry, over one of the entries in the bucket
+		ALWAYS_REPLACE,
+		// Replace the shallowest entry, only if the new entry is at least as
+		// deep
+		DEPTH_PREFERRED
+	}
+
+	// The value returned when a position is not in the table
+	public static final int NOT_FOUND = -1;
+
+	// The amount of slots checked for each key
+	private static final int BUCKET_SIZE = 4;
+
+	// The bytes used by one entry: key, value, depth and age
+	private static final int ENTRY_BYTES = 8 + 4 + 2 + 1;
+
+	private final Replacement replacement;
+
+	private final int mask;
+
+	// Create the arrays for the entries
+	private final long[] keys;
+
+	private final int[] values;
+
+	private final short[] depths;
+
+	private final byte[] ages;
+
+	// Entries stored during an earlier search count as empty
+	private byte age = 1;
+
+	/**
+	 * Creates a new table
+	 * 
+	 * @param megabytes
+	 *            the integer amount of memory the table may use
+	 * @param replacement
+	 *            the Replacement policy for full buckets
+	 */
+	public TranspositionTable(int megabytes, Replacement replacement)
+	{
+		this.replacement = replacement;
+		// Use the largest power of two of entries that fits
+		long entries = Math.max(BUCKET_SIZE, (long) megabytes * 1024 * 1024
+				/ ENTRY_BYTES);
+		int capacity = Integer.highestOneBit((int) Math.min(entries,
+				1 << 30));
+		mask = capacity - 1;
+		keys = new long[capacity];
+		values = new int[capacity];
+		depths = new short[capacity];
+		ages = new byte[capacity];
+	}
+
+	/**
+	 * Empties the table for a new search, in constant time
+	 */
+	public void newSearch()
+	{
+		age++;
+		// When the age wraps around, old entries could look new again, so
+		// clear them for real
+		if (age == 0)
+		{
+			Arrays.fill(ages, (byte) 0);
+			age = 1;
+		}
+	}
+
+	/**
+	 * Returns the value stored for a position
+	 * 
+	 * @param key
+	 *            the long hash of the position
+	 * @return the integer value, or NOT_FOUND if the position is not stored
+	 */
+	public int get(long key)
+	{
+		int index = indexOf(key);
+		for (int probe = 0; probe < BUCKET_SIZE; probe++)
+		{
+			int slot = (index + probe) & mask;
+			if (ages[slot] == age && keys[slot] == key)
+				return values[slot];
+		}
+		return NOT_FOUND;
+	}
+
+	/**
+	 * Stores a value for a position, replacing its old value if it is already
+	 * stored
+	 * 
+	 * @param key
+	 *            the long hash of the position
+	 * @param value
+	 *            the integer value to store (not NOT_FOUND)
+	 * @param depth
+	 *            the integer depth of the value, higher meaning more work
+	 *            went into it
+	 */
+	public void put(long key, int value, int depth)
+	{
+		int index = indexOf(key);
+		int victim = -1;
+		for (int probe = 0; probe < BUCKET_SIZE; probe++)
+		{
+			int slot = (index + probe) & mask;
+			// Reuse the slot of the same position, or the first empty one
+			if (ages[slot] != age || keys[slot] == key)
+			{
+				store(slot, key, value, depth);
+				return;
+			}
+			if (victim < 0 || depths[slot] < depths[victim])
+				victim = slot;
+		}
+		// The bucket is full
+		if (replacement == Replacement.ALWAYS_REPLACE)
+			store((index + (int) (key >>> 62)) & mask, key, value, depth);
+		else if (depth >= depths[victim])
+			store(victim, key, value, depth);
+	}
+
+	/**
+	 * Returns the amount of entries the table can hold
+	 * 
+	 * @return the integer capacity
+	 */
+	public int getCapacity()
+	{
+		return keys.length;
+	}
+
+	/**
+	 * Returns the first slot to check for a key
+	 * 
+	 * @param key
+	 *            the long hash of the position
+	 * @return the integer index of the slot
+	 */
+	private int indexOf(long key)
+	{
+		return (int) (key ^ (key >>> 32)) & mask;
+	}
+
+	/**
+	 * Stores an entry in a slot
+	 * 
+	 * @param slot
+	 *            the integer index of the slot
+	 * @param key
+	 *            the long hash of the position
+	 * @param value
+	 *            the integer value
+	 * @param depth
+	 *            the integer depth of the value
+	 */
+	private void store(int slot, long key, int value, int depth)
+	{
+		keys[slot] = key;
+		values[slot] = value;
+		depths[slot] = (short) depth;
+		ages[slot] = age;
+	}
+}